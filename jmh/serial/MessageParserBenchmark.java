@@ -0,0 +1,49 @@
+package serial;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The SerialDevice receive parser on a synthetic stream of 1024 messages of size bytes,
+ * delivered in pieces of chunk bytes like the serial events do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessageParserBenchmark {
+
+	@Param({"4", "64"})
+	public int size;
+
+	@Param({"1", "16", "4096"})
+	public int chunk;
+
+	byte[] stream;
+	int messages = 0;
+	MessageParser parser = new MessageParser(msg -> messages++, () -> {});
+
+	@Setup
+	public void setup() {
+		Random r = new Random(42);
+		stream = new byte[1024 * (size + 1)];
+		for (int i=0; i<stream.length; i+=size+1) {
+			stream[i] = (byte) size;
+			for (int j=1; j<=size; j++) {
+				stream[i + j] = (byte) r.nextInt(100);
+			}
+		}
+	}
+
+	@Benchmark
+	public int parse() {
+		for (int i=0; i<stream.length; i+=chunk) {
+			parser.accept(stream, i, Math.min(chunk, stream.length - i));
+		}
+		return messages;
+	}
+}
@@ -0,0 +1,56 @@
+package threephase;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * FullCube operations of the search and the output path: copy, doMove (a fixed cycle of
+ * 64 random moves) and getMoveBytes of a full solution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CubeBenchmark {
+
+	FullCube src;
+	FullCube dst = new FullCube();
+	FullCube solution;
+	int[] moves = new int[64];
+	int next = 0;
+	byte[] out = new byte[64];
+
+	@Setup
+	public void setup() {
+		test.initTables();
+		Random r = new Random(42);
+		src = new FullCube(r);
+		for (int i=0; i<moves.length; i++) {
+			moves[i] = r.nextInt(36);
+		}
+		Search search = new Search();
+		search.c = new FullCube(r);
+		solution = search.search();
+	}
+
+	@Benchmark
+	public FullCube copy() {
+		dst.copy(src);
+		return dst;
+	}
+
+	@Benchmark
+	public FullCube doMove() {
+		dst.doMove(moves[next++ & 63]);
+		return dst;
+	}
+
+	@Benchmark
+	public int getMoveBytes() {
+		return solution.getMoveBytes(false, out, 0);
+	}
+}
@@ -0,0 +1,58 @@
+package threephase;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The phase 3 edge coordinate per move: Edge3.getmvrot, the getmvrot4 lookup that
+ * edge3_tables uses instead, and the pruning lookups, on 1024 random edge states cycled
+ * through with all 17 moves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class Edge3Benchmark {
+
+	int[][] edges = new int[1024][];
+	int[] coords = new int[1024];
+	int next = 0;
+
+	@Setup
+	public void setup() {
+		test.initTables();
+		Random r = new Random(42);
+		for (int i=0; i<edges.length; i++) {
+			Edge3 e = new Edge3();
+			e.set(r.nextInt(11880) * Edge3.N_RAW + r.nextInt(Edge3.N_RAW));
+			edges[i] = e.edge;
+			coords[i] = r.nextInt(Edge3.N_EPRUN);
+		}
+	}
+
+	@Benchmark
+	public int getmvrot() {
+		int i = next++;
+		return Edge3.getmvrot(edges[i & 1023], (i % 17) << 3, 10);
+	}
+
+	@Benchmark
+	public int getmvrot4() {
+		int i = next++;
+		return Edge3.getmvrot4(edges[i & 1023], (i % 17) << 3);
+	}
+
+	@Benchmark
+	public int getprun() {
+		return Edge3.getprun(coords[next++ & 1023], 0);
+	}
+
+	@Benchmark
+	public int getDepth() {
+		return Edge3.getDepth(Edge3.edepth, coords[next++ & 1023]);
+	}
+}
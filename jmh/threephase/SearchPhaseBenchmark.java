@@ -0,0 +1,63 @@
+package threephase;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The three search phases, and the whole byteSolve, on fixed states: the state-th random
+ * state of Random(42). Each phase starts from the result of the phases before it, which
+ * setup computes once, as Search.search would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SearchPhaseBenchmark {
+
+	@Param({"0", "1", "2", "3"})
+	public int state;
+
+	Search search;
+	FullCube cube;
+	FullCube[] p1Sols;
+	byte[] out = new byte[64];
+
+	@Setup
+	public void setup() {
+		test.initTables();
+		Random r = new Random(42);
+		for (int i=0; i<state; i++) {
+			new FullCube(r);
+		}
+		cube = new FullCube(r);
+		search = new Search();
+		search.c = cube;
+		p1Sols = search.phase1();
+		search.phase2(p1Sols);
+	}
+
+	@Benchmark
+	public FullCube[] search1() {
+		return search.phase1();
+	}
+
+	@Benchmark
+	public boolean search2() {
+		return search.phase2(p1Sols);
+	}
+
+	@Benchmark
+	public List<int[]> search3() {
+		return search.phase3();
+	}
+
+	@Benchmark
+	public int byteSolve() {
+		return search.byteSolve(cube, out, 0);
+	}
+}
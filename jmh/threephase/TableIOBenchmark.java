@@ -0,0 +1,55 @@
+package threephase;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Loading and saving the threephase tables: Tools.initFrom and saveTo with threephase.data
+ * held in memory, and TableFile.load of a table file in the temp directory. Every load
+ * starts from scratch, so it includes the tables computed on the way.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class TableIOBenchmark {
+
+	byte[] data;
+	File tableFile;
+
+	@Setup
+	public void setup() throws IOException {
+		test.initTables();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Tools.saveTo(new DataOutputStream(bytes));
+		data = bytes.toByteArray();
+		tableFile = File.createTempFile("threephase", ".tables");
+		TableFile.save(tableFile);
+	}
+
+	@TearDown
+	public void tearDown() {
+		tableFile.delete();
+	}
+
+	@Benchmark
+	public void initFrom() throws IOException {
+		Search.inited = false;
+		Tools.initFrom(new DataInputStream(new ByteArrayInputStream(data)));
+	}
+
+	@Benchmark
+	public void saveTo() throws IOException {
+		Tools.saveTo(new DataOutputStream(new BufferedOutputStream(OutputStream.nullOutputStream())));
+	}
+
+	@Benchmark
+	public void load() throws IOException {
+		Search.inited = false;
+		TableFile.load(tableFile);
+	}
+}
@@ -155,6 +155,16 @@ const uint8_t MOVE_DIR_BITMASK    = 0b00010000;
 const uint8_t MOVE_DEPTH_BITMASK  = 0b00001000;
 const uint8_t MOVE_FACE_BITMASK   = 0b00000111;
 
+// Precompiled Actions (see ActionCompiler.java), any byte with one of the top bits set:
+//    01m5m4 0m200 = rotate(m5m4 0m200, m2), m2 = isPrimaryAxisInverted
+//    10000000     = flip()
+//    11000h2h1h0  = setHeight(h2h1h0)
+const uint8_t ACTION_BITMASK      = 0b11000000;
+const uint8_t ACTION_ROTATE       = 0b01000000;
+const uint8_t ACTION_FLIP         = 0b10000000;
+const uint8_t ACTION_HEIGHT       = 0b11000000;
+const uint8_t ACTION_ARG_BITMASK  = 0b00111111;
+
 /* ======================== BIT ABSTRACTION STRUCTURES ALGEBRA ========================
 
   orientation = cube orientation
@@ -223,7 +233,11 @@ void messageRecieved(){
   //DO STUFF WITH data
   // serialSend(data, numBytes);
   #ifdef SOLVE_MODE //execute primary solve sequence
-    executeSolveSequence(data, numBytes);
+    if(numBytes > 0 && (data[0] & ACTION_BITMASK)){
+      executeActionSequence(data, numBytes);
+    }else{
+      executeSolveSequence(data, numBytes);
+    }
   #endif
 }
 
@@ -242,6 +256,23 @@ void messageRecieved(){
       }
     }
   }
+  // actions planned by the computer, no orientation planning is done here
+  void executeActionSequence(uint8_t *actions, uint8_t numActions){
+    for(uint8_t i = 0; i < numActions; i++){
+      uint8_t arg = actions[i] & ACTION_ARG_BITMASK;
+      switch(actions[i] & ACTION_BITMASK){
+        case ACTION_ROTATE:
+          rotate(arg, arg & FACE_TO_PYSY_BITMASK);
+          break;
+        case ACTION_FLIP:
+          flip();
+          break;
+        case ACTION_HEIGHT:
+          setHeight(arg);
+          break;
+      }
+    }
+  }
   void executeMovePrimaryAxisIsTarget(uint8_t move, uint8_t isPrimaryAxisInverted){
     setHeight(move & MOVE_DEPTH_BITMASK ? 2 : isPrimaryAxisInverted / 2 + 1);
     rotate(move, isPrimaryAxisInverted);
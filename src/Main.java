@@ -1,11 +1,20 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 
+import threephase.ActionCompiler;
+import threephase.Edge3;
 import threephase.FullCube;
+import threephase.RobotCostModel;
 import threephase.Search;
+import threephase.SearchStats;
+import threephase.TableFile;
 import threephase.Tools;
 
+import metrics.Metrics;
+import metrics.Timer;
+
 import org.bytedeco.javacv.CanvasFrame;
 import org.bytedeco.javacv.OpenCVFrameConverter;
 import org.bytedeco.opencv.opencv_core.*;
@@ -15,7 +24,7 @@ import static org.bytedeco.opencv.global.opencv_videoio.*;
 
 public class Main {
 
-	public static final Stopwatch stopWatch = new Stopwatch();
+	public static final Metrics metrics = new Metrics();
 
 	private static final boolean USING_SOLVER = true;
 	private static final boolean USING_ARDUINO = true;
@@ -26,6 +35,13 @@ public class Main {
 	private static final boolean TESTING_WEBCAM = false && USING_WEBCAM;
 	private static final boolean TESTING_SOLVER_ARDUINO = true && USING_SOLVER && USING_ARDUINO;
 
+	private static final boolean SENDING_PRECOMPILED_ACTIONS = false; //plan rotations, flips and heights here instead of on the arduino
+	private static final boolean STREAMING_SOLUTION = false; //send each part of the solution as soon as it is final (not with precompiled actions)
+	private static final boolean FULL_EDGE3_DEPTH = false; //exact phase 3 edge pruning to the end, costs about 20s more at startup
+
+	private static final long STARTUP_REPORT_MS = 500; //how often startup progress is printed
+	private static final long METRICS_REPORT_MS = 10000; //how often the metrics are printed
+
 	private static final int CAMERA_WIDTH = 640;
 	private static final int CAMERA_HEIGHT = 480;
 	private static final int DISPLAY_WIDTH = 200;
@@ -38,47 +54,98 @@ public class Main {
 
 	public static void main(String[] args) throws TimeoutException, IOException {
 		printStatusUpdate("PROGRAM START");
+		metrics.startReporting(METRICS_REPORT_MS, System.out);
+		Timer scanTimer = metrics.timer("scan");
+		Timer solveTimer = metrics.timer("solve");
+		Timer transmitTimer = metrics.timer("transmit");
+
+		SerialDevice arduino = null;
+		VideoCapture capture = null;
 
-		SerialDevice arduino;
-		VideoCapture capture;
+		//every step runs on its own thread, the robot is ready when the slowest one is
+		Startup startup = new Startup();
+		Startup.Step<SerialDevice> arduinoStep = null;
+		Startup.Step<VideoCapture> webcamStep = null;
+		Startup.Step<?> twophaseStep = null;
+		Startup.Step<?> threephaseStep = null;
 
 		if(USING_SOLVER){
 			printStatusUpdate(">>> INITIALIZE SOLVER");
 
 			//Initializing .data files
-			initializeSolveData();
-
-			printStatusUpdate("<<< SOLVER INITIALIZED");;
+			twophaseStep = startup.start("min2phase tables", () -> {
+				Timer timer = metrics.timer("table load.min2phase");
+				long t = timer.start();
+				initializeTwophaseData();
+				timer.stop(t);
+				return null;
+			});
+			CompletableFuture<?> twophaseReady = twophaseStep.ready();
+			threephaseStep = startup.start("threephase tables", () -> {
+				Timer timer = metrics.timer("table load.threephase");
+				long t = timer.start();
+				initializeThreephaseData(twophaseReady);
+				timer.stop(t);
+				return null;
+			}, Search::initStatus);
 		}
 
 		if(USING_ARDUINO){
 			printStatusUpdate(">>> CONNECT ARDUINO");
 
 			//use {cd /dev} in terminal to get list of all ports
-			arduino = new SerialDevice("tty.usbmodem1101", 115200){
-				@Override
-				public void messageReceived(byte[] msg){
-				}
-			};
-
-			printStatusUpdate("<<< ARDUINO CONNECTED");
+			arduinoStep = startup.start("arduino", () -> {
+				Timer timer = metrics.timer("serial connect");
+				long t = timer.start();
+				SerialDevice device = new SerialDevice("tty.usbmodem1101", 115200){
+					@Override
+					public void messageReceived(byte[] msg){
+					}
+				};
+				timer.stop(t);
+				return device;
+			});
 		}
 
 		if(USING_WEBCAM){
 			printStatusUpdate(">>> CONNECT WEBCAM");
 
-			System.out.println("Connecting to webcam...");
-			capture = new VideoCapture(0);
-			capture.set(CAP_PROP_FRAME_WIDTH, CAMERA_WIDTH);
-			capture.set(CAP_PROP_FRAME_HEIGHT, CAMERA_HEIGHT);
+			webcamStep = startup.start("webcam", () -> {
+				System.out.println("Connecting to webcam...");
+				VideoCapture cap = new VideoCapture(0);
+				cap.set(CAP_PROP_FRAME_WIDTH, CAMERA_WIDTH);
+				cap.set(CAP_PROP_FRAME_HEIGHT, CAMERA_HEIGHT);
 
-			if (!capture.isOpened()) {
-				System.out.println("Error opening webcam");
-				capture.close();
-				capture.release();
+				if (!cap.isOpened()) {
+					cap.close();
+					cap.release();
+					throw new IOException("Error opening webcam");
+				}
+				return cap;
+			});
+		}
+
+		startup.await(STARTUP_REPORT_MS);
+
+		if(USING_SOLVER){
+			twophaseStep.get();
+			threephaseStep.get();
+			printStatusUpdate("<<< SOLVER INITIALIZED");
+		}
+
+		if(USING_ARDUINO){
+			arduino = arduinoStep.get();
+			printStatusUpdate("<<< ARDUINO CONNECTED");
+		}
+
+		if(USING_WEBCAM){
+			try {
+				capture = webcamStep.get();
+			} catch (IOException e) {
+				System.out.println(e.getMessage());
+				if(USING_ARDUINO) arduino.closeDevice();
 				return;
 			}
-
 			printStatusUpdate("<<< WEBCAM CONNECTED");
 		}
 	
@@ -96,8 +163,9 @@ public class Main {
 		}
 
 		if(TESTING_ARDUINO){
-			stopWatch.start();
+			long t = transmitTimer.start();
 			arduino.send(new byte[]{101, 101, 101, 101});
+			transmitTimer.stop(t);
 	
 			delay(500);
 
@@ -129,12 +197,17 @@ public class Main {
 
 			//collect images
 			for(int i = 0; i < 6; i++){
-				if (capture.read(frame)) {
+				long t = scanTimer.start();
+				boolean read = capture.read(frame);
+				scanTimer.stop(t);
+				if (read) {
 					frameCopies[ind++] = frame.clone();
 
 					//get pixels with: frame.ptr(x, y).get(bgr);, bgr will store the pixel data in blue,green,red format
 					frame.ptr(frame.rows()/2, frame.cols()/2).get(bgr);
 					System.out.println(byteArrayToString(bgr));
+				}else{
+					metrics.counter("scan.failed").increment();
 				}
 	
 				delay(1000);
@@ -175,24 +248,56 @@ public class Main {
 			System.out.println("Scramble Sequence: " + cube.getExecMoveBuffer());
 			Search search = new Search();
 			search.with_rotation = false;
-
-			Byte[] sol = search.byteSolve(cube);
-			String solStr = search.solve(cube);
-
-			System.out.println("\nSolve Sequence (Length = " + sol.length + "): ");
-			for(int i = 0; i < sol.length; i++){
-				System.out.print(sol[i].toString() + " ");
+			search.cost_model = new RobotCostModel();
+
+			if(STREAMING_SOLUTION && !SENDING_PRECOMPILED_ACTIONS){
+				//the moves are sent while the solver runs, so solve includes transmit here
+				SerialDevice device = arduino;
+				long t = solveTimer.start();
+				int len = search.streamSolve(cube, (buf, offset, length) -> {
+					long ts = transmitTimer.start();
+					device.send(buf, offset, length);
+					transmitTimer.stop(ts);
+				});
+				solveTimer.stop(t);
+				recordSolve(search);
+				if(search.getTimeToFirstMove() >= 0) metrics.timer("solve.first move").record(search.getTimeToFirstMove());
+				System.out.printf("Streamed %d moves, first moves sent after %.1fms%n", len, search.getTimeToFirstMove() / 1e6);
+			}else{
+				long t = solveTimer.start();
+				Byte[] sol = search.byteSolve(cube);
+				solveTimer.stop(t);
+				recordSolve(search);
+				System.out.printf("Moves: %d, estimated execution time: %.2fs%n", search.getTotalLength(), search.getExecutionCost());
+				String solStr = search.solve(cube);
+
+				System.out.println("\nSolve Sequence (Length = " + sol.length + "): ");
+				for(int i = 0; i < sol.length; i++){
+					System.out.print(sol[i].toString() + " ");
+				}
+				System.out.println("\n\nSolve Sequence (Length = " + sol.length + "): " + solStr);
+
+				System.out.println();
+				if(SENDING_PRECOMPILED_ACTIONS){
+					ActionCompiler.Program program = new ActionCompiler().compile(sol);
+					System.out.println("Actions: " + program + "\n");
+					t = transmitTimer.start();
+					arduino.sendSplit(program.actions);
+					transmitTimer.stop(t);
+				}else{
+					t = transmitTimer.start();
+					arduino.send(sol);
+					transmitTimer.stop(t);
+				}
 			}
-			System.out.println("\n\nSolve Sequence (Length = " + sol.length + "): " + solStr);
-
-			System.out.println();
-			arduino.send(sol);
 		}
 
 
 		delay(1000);
 
 		printStatusUpdate("PROGRAM CLEANUP");
+		metrics.stopReporting();
+		System.out.println(metrics.report());
 		if(USING_ARDUINO){
 			arduino.printAllMessagesDebug();
 			arduino.closeDevice();
@@ -209,13 +314,22 @@ public class Main {
 		return str + "]";
 	}
 
-	private static void initializeSolveData(){
+	private static void initializeTwophaseData(){
 		try {
 			DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream("twophase.data")));
 			cs.min2phase.Tools.initFrom(dis);
 			dis.close();
 		} catch (IOException e) {
-			e.printStackTrace();
+			//no data file: use the one bundled in the jar if there is one, else generate
+			System.out.println(e.getMessage());
+			try (InputStream in = Main.class.getResourceAsStream("/twophase.data")) {
+				if (in != null) {
+					cs.min2phase.Tools.initFrom(new DataInputStream(new BufferedInputStream(in)));
+					return;
+				}
+			} catch (IOException e2) {
+				e2.printStackTrace();
+			}
 			try {
 				DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream("twophase.data")));
 				cs.min2phase.Tools.saveTo(dos);
@@ -224,27 +338,53 @@ public class Main {
 				e2.printStackTrace();
 			}
 		}
+	}
 
+	//runs alongside initializeTwophaseData, but generating the tables needs min2phase, so that waits for it
+	private static void initializeThreephaseData(CompletableFuture<?> twophase){
+		Edge3.fullDepth = FULL_EDGE3_DEPTH;
+
+		try {
+			TableFile.load(new File("threephase.tables"));
+			return;
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+		}
+		try {
+			//missing, truncated, corrupt or stale: use the file bundled in the jar if there is one
+			if (TableFile.install("/threephase.tables", new File("threephase.tables"))) {
+				TableFile.load(new File("threephase.tables"));
+				return;
+			}
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+		}
+		//else start from the old data file if there is one, else generate
 		try {
 			DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream("threephase.data")));
 			Tools.initFrom(dis);
 			dis.close();
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+		}
+		twophase.join();
+		try {
+			TableFile.save(new File("threephase.tables"));
 		} catch (IOException e) {
 			e.printStackTrace();
-			try {
-				DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream("threephase.data")));
-				Tools.saveTo(dos);
-				dos.close();
-			} catch (IOException e2) {
-				e2.printStackTrace();
-			}
 		}
 	}
 
+	private static void recordSolve(Search search){
+		SearchStats stats = search.getStats();
+		metrics.histogram("solve.moves").record(search.getTotalLength());
+		metrics.histogram("solve.nodes").record(stats.nodes());
+		metrics.timer("solve.search333").record(stats.time333);
+		if(stats.allocatedBytes >= 0) metrics.histogram("solve.allocated bytes").record(stats.allocatedBytes);
+	}
+
 	private static void printStatusUpdate(String str){
-		delay(100);
 		System.out.println("\n======================== " + str + " ========================\n");
-		delay(100);
 	}
 
 	public static void delay(int ms){
@@ -1,8 +1,9 @@
 import com.fazecast.jSerialComm.*;
 
+import serial.MessageParser;
+
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.concurrent.TimeoutException;
 
 public abstract class SerialDevice {
@@ -10,10 +11,8 @@ public abstract class SerialDevice {
 	private SerialPort port;
 
 	private volatile ArrayList<byte[]> receivedMessages = new ArrayList<>();
-	private volatile byte[] buffer = null;
-	private volatile int dataIndex = 0;
 
-	private boolean waitingForResetFlag = false;
+	private volatile boolean waitingForResetFlag = false;
 
 	public SerialDevice(String portDescriptor, int baud) throws IOException, TimeoutException{
 		port = SerialPort.getCommPort(portDescriptor);
@@ -21,6 +20,14 @@ public abstract class SerialDevice {
 		port.setComPortParameters(baud, 8, 1, 0);
 		port.setComPortTimeouts(SerialPort.TIMEOUT_WRITE_BLOCKING, 0, 0);
 
+		MessageParser parser = new MessageParser(msg -> {
+			receivedMessages.add(msg);
+			messageReceived(msg);
+		}, () -> {
+			receivedMessages = new ArrayList<>();
+			waitingForResetFlag = false;
+		});
+
 		port.addDataListener(new SerialPortDataListener() { //Listener for data recieved
 			@Override
 			public int getListeningEvents() {
@@ -28,47 +35,7 @@ public abstract class SerialDevice {
 			}
 			@Override
 			public void serialEvent(SerialPortEvent serialPortEvent) {
-				processData(serialPortEvent.getReceivedData());
-			}
-
-			private void processData(byte[] data){
-				if(data.length == 0) return;
-
-				int i = 0;
-				if(buffer == null){
-					if(data[i] == -1){
-						resetDevice();
-						processData(Arrays.copyOfRange(data, 1, data.length));
-						return;
-					}
-
-					buffer = new byte[data[i++]];
-				}
-
-				while(i < data.length && dataIndex < buffer.length){
-					if(data[i] == -1){
-						resetDevice();
-						processData(Arrays.copyOfRange(data, i+1, data.length));
-						return;
-					}
-					buffer[dataIndex++] = data[i++];
-				}
-
-				if(dataIndex >= buffer.length){
-					receivedMessages.add(buffer);
-					messageReceived(buffer);
-					dataIndex = 0;
-					buffer = null;
-					if(i != data.length)
-						processData(Arrays.copyOfRange(data, i, data.length));
-				}
-			}
-
-			private void resetDevice(){
-				receivedMessages = new ArrayList<>();
-				dataIndex = 0;
-				buffer = null;
-				waitingForResetFlag = false;
+				parser.accept(serialPortEvent.getReceivedData());
 			}
 		});
 
@@ -79,16 +46,18 @@ public abstract class SerialDevice {
 		waitForReset(10);
 	}
 
+	//polls every 10ms, so that startup does not lose up to 100ms after the reset
 	public void waitForReset(double seconds) throws TimeoutException{
 		waitingForResetFlag = true;
+		long deadline = System.nanoTime() + (long)(seconds * 1e9);
 
-		for (int i = 0; waitingForResetFlag; i++){
-			if(i >= seconds * 10){
+		while (waitingForResetFlag){
+			if(System.nanoTime() >= deadline){
 				throw new TimeoutException("Reset did not occur in the given waiting period");
 			}
 
 			try {
-				Thread.sleep(100);
+				Thread.sleep(10);
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 			}
@@ -109,9 +78,13 @@ public abstract class SerialDevice {
 	}
 
 	public void send(byte[] data){
+		send(data, 0, data.length);
+	}
+
+	public void send(byte[] data, int offset, int length){
 		try {
-			port.getOutputStream().write(data.length);
-			port.getOutputStream().write(data);
+			port.getOutputStream().write(length);
+			port.getOutputStream().write(data, offset, length);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -130,6 +103,22 @@ public abstract class SerialDevice {
 		}
 	}
 
+	/**
+	 * Sends data as consecutive messages of at most 255 bytes, the most a one byte
+	 * length prefix can describe.
+	 */
+	public void sendSplit(byte[] data){
+		try {
+			for(int i = 0; i < data.length; i += 255){
+				int len = Math.min(255, data.length - i);
+				port.getOutputStream().write(len);
+				port.getOutputStream().write(data, i, len);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	public abstract void messageReceived(byte[] msg);
 
 	public byte[] getMessage(int ind){
@@ -0,0 +1,122 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Runs the startup steps (table loading, device connections) each on its own thread, so
+ * that startup takes as long as the slowest step instead of the sum of all of them. Every
+ * step has a readiness future and a progress value, await prints the progress of all
+ * steps until they are done.
+ */
+public class Startup {
+
+	public static class Step<T> {
+		public final String name;
+		private final CompletableFuture<T> ready = new CompletableFuture<>();
+		private final DoubleSupplier progress;
+		private volatile long nanos = -1;
+
+		private Step(String name, DoubleSupplier progress){
+			this.name = name;
+			this.progress = progress;
+		}
+
+		//Completes with the result of the step, or exceptionally with what it threw
+		public CompletableFuture<T> ready(){
+			return ready;
+		}
+
+		//From 0 to 1, steps without a progress source stay at 0 until they are done
+		public double progress(){
+			if(ready.isDone()) return 1;
+			return progress == null ? 0 : Math.max(0, Math.min(1, progress.getAsDouble()));
+		}
+
+		//Waits for the step and returns its result, rethrowing what the step threw
+		public T get() throws IOException, TimeoutException{
+			try {
+				return ready.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException(name + " interrupted", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof IOException) throw (IOException) cause;
+				if(cause instanceof TimeoutException) throw (TimeoutException) cause;
+				if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+				if(cause instanceof Error) throw (Error) cause;
+				throw new IllegalStateException(name + " failed", cause);
+			}
+		}
+
+		@Override
+		public String toString(){
+			if(!ready.isDone()) return String.format("%s %3.0f%%", name, progress() * 100);
+			return String.format("%s %s in %.2fs", name, ready.isCompletedExceptionally() ? "failed" : "ready", nanos / 1e9);
+		}
+	}
+
+	private final long start = System.nanoTime();
+	private final ArrayList<Step<?>> steps = new ArrayList<>();
+
+	public <T> Step<T> start(String name, Callable<T> task){
+		return start(name, task, null);
+	}
+
+	public synchronized <T> Step<T> start(String name, Callable<T> task, DoubleSupplier progress){
+		Step<T> step = new Step<>(name, progress);
+		steps.add(step);
+		Thread thread = new Thread(() -> {
+			try {
+				T result = task.call();
+				step.nanos = System.nanoTime() - start;
+				step.ready.complete(result);
+			} catch (Throwable t) {
+				step.nanos = System.nanoTime() - start;
+				step.ready.completeExceptionally(t);
+			}
+		}, "startup " + name);
+		thread.setDaemon(true);
+		thread.start();
+		return step;
+	}
+
+	/**
+	 * Waits until every step is done, successfully or not, printing their progress every
+	 * reportMillis. Failures are left to Step.get.
+	 */
+	public void await(long reportMillis){
+		CompletableFuture<?>[] all;
+		synchronized(this){
+			all = new CompletableFuture<?>[steps.size()];
+			for(int i = 0; i < all.length; i++) all[i] = steps.get(i).ready;
+		}
+		CompletableFuture<Void> done = CompletableFuture.allOf(all);
+		while(true){
+			try {
+				done.get(reportMillis, TimeUnit.MILLISECONDS);
+				break;
+			} catch (TimeoutException e) {
+				System.out.println(this);
+			} catch (ExecutionException e) {
+				break;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		System.out.println(this);
+	}
+
+	@Override
+	public synchronized String toString(){
+		StringBuilder sb = new StringBuilder(String.format("startup %.2fs:", (System.nanoTime() - start) / 1e9));
+		for(int i = 0; i < steps.size(); i++) sb.append(i == 0 ? " " : " | ").append(steps.get(i));
+		return sb.toString();
+	}
+}
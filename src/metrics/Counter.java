@@ -0,0 +1,33 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count that any thread can add to.
+ */
+public class Counter {
+
+	public final String name;
+	private final AtomicLong count = new AtomicLong();
+
+	Counter(String name){
+		this.name = name;
+	}
+
+	public void increment(){
+		count.incrementAndGet();
+	}
+
+	public void add(long n){
+		count.addAndGet(n);
+	}
+
+	public long get(){
+		return count.get();
+	}
+
+	@Override
+	public String toString(){
+		return name + " " + get();
+	}
+}
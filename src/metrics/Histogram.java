@@ -0,0 +1,110 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts non-negative values in log-linear buckets: every power of two is split into
+ * SUB_BUCKETS equal buckets, so a percentile is off by at most 1/SUB_BUCKETS of the value
+ * (values below SUB_BUCKETS are exact). Recording is a few atomic increments and never
+ * allocates or locks. Histograms merge by adding their buckets, for example per-thread
+ * or per-run ones into a total.
+ */
+public class Histogram {
+
+	static final int SUB_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BITS;
+	static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	public final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	Histogram(String name){
+		this.name = name;
+	}
+
+	static int bucket(long value){
+		if(value < SUB_BUCKETS) return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	//the largest value that falls in bucket i
+	static long highest(int i){
+		if(i < SUB_BUCKETS) return i;
+		int shift = i / SUB_BUCKETS - 1;
+		long high = ((long) (i % SUB_BUCKETS + SUB_BUCKETS + 1) << shift) - 1;
+		return high < 0 ? Long.MAX_VALUE : high;
+	}
+
+	//negative values count as 0
+	public void record(long value){
+		if(value < 0) value = 0;
+		buckets.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long m = max.get();
+		while(value > m && !max.compareAndSet(m, value)) m = max.get();
+	}
+
+	public void merge(Histogram other){
+		for(int i = 0; i < BUCKETS; i++){
+			long n = other.buckets.get(i);
+			if(n != 0) buckets.addAndGet(i, n);
+		}
+		count.addAndGet(other.count.get());
+		sum.addAndGet(other.sum.get());
+		long m = max.get(), o = other.max.get();
+		while(o > m && !max.compareAndSet(m, o)) m = max.get();
+	}
+
+	public long count(){
+		return count.get();
+	}
+
+	public long sum(){
+		return sum.get();
+	}
+
+	public long max(){
+		return max.get();
+	}
+
+	public double mean(){
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * The value at or below which p (0 to 1) of the recorded values lie, as the upper end
+	 * of its bucket but never above max. 0 when empty. Samples recorded while this runs
+	 * may or may not be seen.
+	 */
+	public long percentile(double p){
+		long n = 0;
+		long[] counts = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++) n += counts[i] = buckets.get(i);
+		if(n == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(p * n));
+		for(int i = 0; i < BUCKETS; i++){
+			rank -= counts[i];
+			if(rank <= 0) return Math.min(highest(i), max.get());
+		}
+		return max.get();
+	}
+
+	//scale divides the values for printing, unit follows them
+	String format(double scale, String unit){
+		return String.format("%s n=%d mean=%.2f%s p50=%.2f%s p90=%.2f%s p99=%.2f%s max=%.2f%s", name, count(),
+			mean() / scale, unit, percentile(0.5) / scale, unit, percentile(0.9) / scale, unit,
+			percentile(0.99) / scale, unit, max() / scale, unit);
+	}
+
+	@Override
+	public String toString(){
+		return format(1, "");
+	}
+}
@@ -0,0 +1,73 @@
+package metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Named counters, timers and histograms. Looking one up by name may allocate the first
+ * time, so hot code looks them up once and keeps them in a field; recording on them is
+ * lock-free and does not allocate. report() lists everything by name, startReporting
+ * prints it periodically from a daemon thread.
+ */
+public class Metrics {
+
+	private final ConcurrentSkipListMap<String, Object> metrics = new ConcurrentSkipListMap<>();
+	private final long start = System.nanoTime();
+
+	private ScheduledExecutorService reporter;
+	private ScheduledFuture<?> reporting;
+
+	public Counter counter(String name){
+		return get(name, Counter.class);
+	}
+
+	public Timer timer(String name){
+		return get(name, Timer.class);
+	}
+
+	public Histogram histogram(String name){
+		return get(name, Histogram.class);
+	}
+
+	private <T> T get(String name, Class<T> type){
+		Object metric = metrics.get(name);
+		if(metric == null){
+			metric = metrics.computeIfAbsent(name, n -> type == Counter.class ? new Counter(n) : type == Timer.class ? new Timer(n) : new Histogram(n));
+		}
+		if(metric.getClass() != type){
+			throw new IllegalArgumentException(name + " is a " + metric.getClass().getSimpleName() + ", not a " + type.getSimpleName());
+		}
+		return type.cast(metric);
+	}
+
+	public String report(){
+		StringBuilder sb = new StringBuilder(String.format("metrics after %.1fs", (System.nanoTime() - start) / 1e9));
+		for(Map.Entry<String, Object> e : metrics.entrySet()) sb.append("\n  ").append(e.getValue());
+		return sb.toString();
+	}
+
+	//prints report() to out every periodMillis until stopReporting, replacing an earlier schedule
+	public synchronized void startReporting(long periodMillis, PrintStream out){
+		stopReporting();
+		if(reporter == null){
+			reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "metrics report");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		reporting = reporter.scheduleAtFixedRate(() -> out.println(report()), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public synchronized void stopReporting(){
+		if(reporting != null){
+			reporting.cancel(false);
+			reporting = null;
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package metrics;
+
+/**
+ * A histogram of durations in nanoseconds. The start time is handed back to stop instead
+ * of being kept, so one timer can time overlapping calls on any number of threads:
+ *
+ *   long t = timer.start();
+ *   ...
+ *   timer.stop(t);
+ */
+public class Timer extends Histogram {
+
+	Timer(String name){
+		super(name);
+	}
+
+	public long start(){
+		return System.nanoTime();
+	}
+
+	//records the time since start and returns it
+	public long stop(long start){
+		long nanos = System.nanoTime() - start;
+		record(nanos);
+		return nanos;
+	}
+
+	@Override
+	public String toString(){
+		return format(1e6, "ms");
+	}
+}
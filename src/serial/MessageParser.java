@@ -0,0 +1,67 @@
+package serial;
+
+import java.util.function.Consumer;
+
+/**
+ * Splits the bytes received from the arduino into messages. A message is a length byte
+ * followed by that many bytes, and a -1 byte anywhere drops the message in progress and
+ * signals that the arduino has reset. Received data may end and resume anywhere in a
+ * message.
+ */
+public class MessageParser {
+
+	private final Consumer<byte[]> onMessage;
+	private final Runnable onReset;
+
+	private byte[] buffer = null;
+	private int dataIndex = 0;
+
+	public MessageParser(Consumer<byte[]> onMessage, Runnable onReset){
+		this.onMessage = onMessage;
+		this.onReset = onReset;
+	}
+
+	public void accept(byte[] data){
+		accept(data, 0, data.length);
+	}
+
+	public void accept(byte[] data, int offset, int length){
+		int i = offset;
+		int end = offset + length;
+		while(i < end){
+			if(buffer == null){
+				if(data[i] == -1){
+					i++;
+					reset();
+					continue;
+				}
+				buffer = new byte[data[i++]];
+			}
+
+			while(i < end && dataIndex < buffer.length){
+				if(data[i] == -1){
+					break;
+				}
+				buffer[dataIndex++] = data[i++];
+			}
+			if(i < end && dataIndex < buffer.length){
+				i++;
+				reset();
+				continue;
+			}
+
+			if(dataIndex >= buffer.length){
+				byte[] msg = buffer;
+				dataIndex = 0;
+				buffer = null;
+				onMessage.accept(msg);
+			}
+		}
+	}
+
+	private void reset(){
+		dataIndex = 0;
+		buffer = null;
+		onReset.run();
+	}
+}
@@ -0,0 +1,240 @@
+package threephase;
+
+import static threephase.RobotCostModel.*;
+
+import java.util.*;
+
+/**
+ * Compiles a move sequence (move2byte encoding, as returned by getMoveBytes) into the
+ * low level actions of the ARCS4 robot. Instead of the greedy choice that the sketch
+ * makes for every move, it runs a shortest path over the robot states, that is the 24
+ * cube orientations times the 5 elevator heights, and so finds the cheapest series of
+ * rotations, flips and height changes for the whole sequence.
+ *
+ * Between two moves the robot may change height, flip the cube (at HEIGHT_FLIP only,
+ * as the sketch does) and rotate the whole cube (at HEIGHT_DEPTH4). A move is turned
+ * at the height the sketch uses for it, once its axis is the vertical one. Orientation
+ * changes follow the same algebra as the sketch, see RobotCostModel.
+ *
+ * Action bytes, as understood by executeActionSequence() in the sketch:
+ *   01 m5 m4 0 m2 00   ROTATE, m5 = half turn, m4 = CCW, m2 = lower face (isPrimaryAxisInverted)
+ *   10 000000          FLIP
+ *   11 000 h2h1h0      HEIGHT h
+ */
+public class ActionCompiler implements CostModel {
+
+	public static final int ACTION_ROTATE = 0x40;
+	public static final int ACTION_FLIP = 0x80;
+	public static final int ACTION_HEIGHT = 0xc0;
+	public static final int ACTION_MASK = 0xc0;
+
+	private static final int HEIGHTS = 5;
+	private static final int STATES = 24 * HEIGHTS;
+	private static final int[] WHOLE_CUBE_ROTATIONS = {0x00, 0x10, 0x20};
+
+	// added to every action while planning, so that of two equally fast plans the one with
+	// fewer actions wins (e.g. HEIGHT4 rather than HEIGHT3 HEIGHT4)
+	private static final double TIE_BREAK = 1e-6;
+
+	// the 24 valid orientation bytes, and their index
+	private static final int[] orient = new int[24];
+	private static final int[] orientIdx = new int[64];
+
+	static {
+		int idx = 0;
+		for (int o=0; o<64; o++) {
+			int up = o >> FACE_BITS;
+			int front = o & FRONT_FACE_MASK;
+			if ((up & AXIS_MASK) != 3 && (front & AXIS_MASK) != 3 && (up & AXIS_MASK) != (front & AXIS_MASK)) {
+				orientIdx[o] = idx;
+				orient[idx++] = o;
+			} else {
+				orientIdx[o] = -1;
+			}
+		}
+	}
+
+	private final RobotCostModel timing;
+
+	public ActionCompiler() {
+		this(new RobotCostModel());
+	}
+
+	public ActionCompiler(RobotCostModel timing) {
+		this.timing = timing;
+	}
+
+	/**
+	 * Actions for one move sequence and their estimated duration in seconds.
+	 */
+	public static class Program {
+		public final byte[] actions;
+		public final double duration;
+
+		Program(byte[] actions, double duration) {
+			this.actions = actions;
+			this.duration = duration;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			for (byte a : actions) {
+				switch (a & ACTION_MASK) {
+				case ACTION_ROTATE:
+					sb.append((a & MOVE_MAG) != 0 ? "ROTATE2" : (a & 0x10) != 0 ? "ROTATE'" : "ROTATE");
+					sb.append((a & PYSY_MASK) != 0 ? "(inv) " : " ");
+					break;
+				case ACTION_FLIP:
+					sb.append("FLIP ");
+					break;
+				case ACTION_HEIGHT:
+					sb.append("HEIGHT").append(a & 7).append(' ');
+					break;
+				}
+			}
+			return String.format("%s(%d actions, %.2fs)", sb, actions.length, duration);
+		}
+	}
+
+	@Override
+	public double cost(byte[] moves, int length) {
+		return compile(moves, length).duration;
+	}
+
+	public Program compile(Byte[] moves) {
+		byte[] arr = new byte[moves.length];
+		for (int i=0; i<arr.length; i++) {
+			arr[i] = moves[i];
+		}
+		return compile(arr, arr.length);
+	}
+
+	/**
+	 * Cheapest actions for moves[0..length), starting from the power-on state of the
+	 * sketch (ORIENT_UF, elevator at HEIGHT_FLIP).
+	 */
+	public Program compile(byte[] moves, int length) {
+		// per move: how each state was reached while repositioning, and before the turn
+		int[][] reposFrom = new int[length][STATES];
+		byte[][] reposAction = new byte[length][STATES];
+		int[][] turnFrom = new int[length][STATES];
+
+		double[] dist = new double[STATES];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		dist[orientIdx[ORIENT_UF] * HEIGHTS + HEIGHT_FLIP] = 0;
+
+		for (int i=0; i<length; i++) {
+			int move = moves[i];
+			reposition(dist, reposFrom[i], reposAction[i]);
+
+			double[] next = new double[STATES];
+			Arrays.fill(next, Double.POSITIVE_INFINITY);
+			double turn = timing.rotateTime(move) + TIE_BREAK;
+			for (int oi=0; oi<24; oi++) {
+				int o = orient[oi];
+				int upXorMove = o >> FACE_BITS ^ move;
+				if ((upXorMove & AXIS_MASK) != 0) {
+					continue;
+				}
+				int inverted = upXorMove & PYSY_MASK;
+				int h = (move & MOVE_DEPTH) != 0 ? 2 : inverted / 2 + 1;
+				int s = oi * HEIGHTS + h;
+				if (dist[s] == Double.POSITIVE_INFINITY) {
+					continue;
+				}
+				int t = orientIdx[rotated(o, h, move, inverted)] * HEIGHTS + h;
+				if (dist[s] + turn < next[t]) {
+					next[t] = dist[s] + turn;
+					turnFrom[i][t] = s;
+				}
+			}
+			dist = next;
+		}
+
+		int best = 0;
+		for (int s=1; s<STATES; s++) {
+			if (dist[s] < dist[best]) {
+				best = s;
+			}
+		}
+
+		ArrayList<Byte> actions = new ArrayList<Byte>();
+		double duration = 0;
+		int s = best;
+		for (int i=length-1; i>=0; i--) {
+			int from = turnFrom[i][s];
+			int o = orient[from / HEIGHTS];
+			duration += timing.rotateTime(moves[i]);
+			actions.add((byte) (ACTION_ROTATE | moves[i] & 0x30 | (o >> FACE_BITS ^ moves[i]) & PYSY_MASK));
+			s = from;
+			while (reposFrom[i][s] != -1) {
+				byte a = reposAction[i][s];
+				int prev = reposFrom[i][s];
+				switch (a & ACTION_MASK) {
+				case ACTION_ROTATE:
+					duration += timing.rotateTime(a);
+					break;
+				case ACTION_FLIP:
+					duration += timing.flip;
+					break;
+				case ACTION_HEIGHT:
+					duration += timing.heightTime(prev % HEIGHTS, s % HEIGHTS);
+					break;
+				}
+				actions.add(a);
+				s = prev;
+			}
+		}
+		byte[] ret = new byte[actions.size()];
+		for (int i=0; i<ret.length; i++) {
+			ret[i] = actions.get(ret.length - 1 - i);
+		}
+		return new Program(ret, duration);
+	}
+
+	/**
+	 * Dijkstra over the height, flip and whole cube rotation actions. dist is updated in
+	 * place, from/action record the last action into each state (-1 if none was needed).
+	 */
+	private void reposition(double[] dist, int[] from, byte[] action) {
+		Arrays.fill(from, -1);
+		boolean[] done = new boolean[STATES];
+		while (true) {
+			int s = -1;
+			for (int i=0; i<STATES; i++) {
+				if (!done[i] && dist[i] != Double.POSITIVE_INFINITY && (s == -1 || dist[i] < dist[s])) {
+					s = i;
+				}
+			}
+			if (s == -1) {
+				return;
+			}
+			done[s] = true;
+			int oi = s / HEIGHTS;
+			int o = orient[oi];
+			int h = s % HEIGHTS;
+			for (int k=0; k<HEIGHTS; k++) {
+				if (k != h) {
+					relax(dist, from, action, s, oi * HEIGHTS + k, timing.heightTime(h, k), (byte) (ACTION_HEIGHT | k));
+				}
+			}
+			if (h == HEIGHT_FLIP) {
+				relax(dist, from, action, s, orientIdx[flipped(o, h)] * HEIGHTS + h, timing.flip, (byte) ACTION_FLIP);
+			}
+			if (h == HEIGHT_DEPTH4) {
+				for (int r : WHOLE_CUBE_ROTATIONS) {
+					relax(dist, from, action, s, orientIdx[rotated(o, h, r, 0)] * HEIGHTS + h, timing.rotateTime(r), (byte) (ACTION_ROTATE | r));
+				}
+			}
+		}
+	}
+
+	private static void relax(double[] dist, int[] from, byte[] action, int s, int t, double cost, byte a) {
+		if (dist[s] + cost + TIE_BREAK < dist[t]) {
+			dist[t] = dist[s] + cost + TIE_BREAK;
+			from[t] = s;
+			action[t] = a;
+		}
+	}
+}
@@ -3,6 +3,7 @@ package threephase;
 import static threephase.Moves.*;
 import static threephase.Util.*;
 
+import java.nio.IntBuffer;
 import java.util.*;
 /*
 			0	1
@@ -17,15 +18,30 @@ import java.util.*;
 
 final class Center1 {
 	
-	static int[][] ctsmv = new int[15582][36];
+	// a heap buffer, or mapped from the table file, see TableFile
+	static IntBuffer ctsmv = IntBuffer.allocate(15582*36);
 	static int[] sym2raw = new int[15582];
 	static byte[] csprun = new byte[15582];
 	
-	static int[][] symmult = new int[48][48];
-	static int[][] symmove = new int[48][36];
+	static int[] symmult = new int[48*48];
+	static int[] symmove = new int[48*36];
 	static int[] syminv = new int[48];
 	static int[] finish = new int[48];
 
+	// the move and symmetry tables are flat and row major, these read one entry
+
+	static int ctsmv(int ct, int m) {
+		return ctsmv.get(ct * 36 + m);
+	}
+
+	static int symmult(int s1, int s2) {
+		return symmult[s1 * 48 + s2];
+	}
+
+	static int symmove(int sym, int m) {
+		return symmove[sym * 36 + m];
+	}
+
 	static int[] raw2sym;
 
 	static void initSym2Raw() {
@@ -68,7 +84,7 @@ final class Center1 {
 					continue;
 				}
 				for (int m=0; m<27; m++) {
-					int idx = ctsmv[i][m] >>> 6;
+					int idx = ctsmv(i, m) >>> 6;
 					if (csprun[idx] != check) {
 						continue;
 					}
@@ -88,16 +104,18 @@ final class Center1 {
 
 	static void createMoveTable() {
 		System.out.println("Create Phase1 Center Move Table...");
-		Center1 c = new Center1();
-		Center1 d = new Center1();
-		for (int i=0; i<15582; i++) {
+		ctsmv = IntBuffer.allocate(15582*36);
+		IntBuffer table = ctsmv;
+		ParallelSearch.forEach(15582, i -> {
+			Center1 c = new Center1();
+			Center1 d = new Center1();
 			d.set(sym2raw[i]);
 			for (int m=0; m<36; m++) {
 				c.set(d);
 				c.move(m);
-				ctsmv[i][m] = c.getsym();
+				table.put(i * 36 + m, c.getsym());
 			}
-		}
+		});
 	}
 	
 	byte[] ct = new byte[24];
@@ -341,7 +359,7 @@ final class Center1 {
 			for (int j=0; j<48; j++) {
 				for (int k=0; k<48; k++) {
 					if (c.equals(d)) {
-						symmult[i][j] = k;
+						symmult[i * 48 + j] = k;
 						if (k==0) {
 							syminv[i] = j;
 						}
@@ -373,7 +391,7 @@ final class Center1 {
 					f.set(e);
 					f.move(k);
 					if (f.equals(d)) {
-						symmove[i][j] = k;
+						symmove[i * 36 + j] = k;
 						break;
 					}
 				}
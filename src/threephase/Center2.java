@@ -21,11 +21,19 @@ class Center2 {
 	int[] ct = new int[16];
 	int parity = 0;
 	
-	static int[][] rlmv = new int[70][28];
-	static char[][] ctmv = new char[6435][28];
+	static int[] rlmv = new int[70*28];
+	static char[] ctmv = new char[6435*28];
 	static int[][] rlrot = new int[70][16];
 	static char[][] ctrot = new char[6435][16];
 	static byte[] ctprun = new byte[6435*35*2];
+
+	static int rlmv(int rl, int m) {
+		return rlmv[rl * 28 + m];
+	}
+
+	static int ctmv(int ct, int m) {
+		return ctmv[ct * 28 + m];
+	}
 	
 	private static int[] pmv = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 1, 
 						0, 0, 0, 0, 0, 0, 1, 0, 1, 0, 0, 0};
@@ -37,7 +45,7 @@ class Center2 {
 			for (int m=0; m<28; m++) {
 				c.setrl(i);
 				c.move(move2std[m]);
-				rlmv[i][m] = c.getrl();
+				rlmv[i * 28 + m] = c.getrl();
 			}
 		}
 		
@@ -61,13 +69,14 @@ class Center2 {
 			}
 		}
 	
-		for (int i=0; i<6435; i++) {
+		ParallelSearch.forEach(6435, i -> {
+			Center2 cc = new Center2();
 			for (int m=0; m<28; m++) {
-				c.setct(i);
-				c.move(move2std[m]);
-				ctmv[i][m] = (char) c.getct();
+				cc.setct(i);
+				cc.move(move2std[m]);
+				ctmv[i * 28 + m] = (char) cc.getct();
 			}
-		}
+		});
 		Arrays.fill(ctprun, (byte)-1);
 
 		ctprun[0] = ctprun[18] = ctprun[28] = ctprun[46] = ctprun[54] = ctprun[56] = 0;
@@ -81,8 +90,8 @@ class Center2 {
 				int ct = i / 70;
 				int rl = i % 70;
 				for (int m=0; m<23; m++) {
-					int ctx = ctmv[ct][m];
-					int rlx = rlmv[rl][m];
+					int ctx = ctmv(ct, m);
+					int rlx = rlmv(rl, m);
 					int idx = ctx * 70 + rlx;
 					if (ctprun[idx] == -1) {
 						ctprun[idx] = (byte)(depth+1);
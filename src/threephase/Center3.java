@@ -18,10 +18,14 @@ import java.util.*;
 
 class Center3 {
 
-	static char[][] ctmove = new char[35*35*12*2][20];
+	static char[] ctmove = new char[35*35*12*2*20];
 	static int[] pmove = {0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 1, 1};
 	
 	static byte[] prun = new byte[35*35*12*2];
+
+	static int ctmove(int ct, int m) {
+		return ctmove[ct * 20 + m];
+	}
 	
 	static int[] rl2std = {0, 9, 14, 23, 27, 28, 41, 42, 46, 55, 60, 69};
 	static int[] std2rl = new int[70];
@@ -37,14 +41,14 @@ class Center3 {
 			std2rl[rl2std[i]] = i;
 		}
 		
-		Center3 c = new Center3();
-		for (int i=0; i<35*35*12*2; i++) {
+		ParallelSearch.forEach(35*35*12*2, i -> {
+			Center3 c = new Center3();
 			for (int m=0; m<20; m++) {
 				c.setct(i);
 				c.move(m);
-				ctmove[i][m] = (char)c.getct();
+				ctmove[i * 20 + m] = (char)c.getct();
 			}
-		}
+		});
 
 		Arrays.fill(prun, (byte)-1);
 		prun[0] = 0;
@@ -56,8 +60,8 @@ class Center3 {
 					continue;
 				}
 				for (int m=0; m<17; m++) {
-					if (prun[ctmove[i][m]] == -1) {
-						prun[ctmove[i][m]] = (byte)(depth+1);
+					if (prun[ctmove(i, m)] == -1) {
+						prun[ctmove(i, m)] = (byte)(depth+1);
 						done++;
 					}
 				}
@@ -0,0 +1,13 @@
+package threephase;
+
+/**
+ * Estimates how long a move sequence takes to execute. Moves use the move2byte
+ * encoding that is sent to the robot.
+ */
+public interface CostModel {
+
+	/**
+	 * Estimated execution time, in seconds, of moves[0..length).
+	 */
+	double cost(byte[] moves, int length);
+}
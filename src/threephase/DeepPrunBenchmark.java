@@ -0,0 +1,93 @@
+package threephase;
+
+import java.util.*;
+
+/**
+ * Phase 3 with the default Edge3 pruning (eprun, flat from MAX_DEPTH on) against the
+ * full depth table (Edge3.fullDepth), on a seeded corpus of random states. The full
+ * table is built once and the two modes are switched per solve, the default mode
+ * behaves exactly as with the table built only to MAX_DEPTH.
+ *
+ * Reports phase 3 nodes and latency (Search.time3) for all states, and for the hard
+ * ones: the tenth of the corpus with the most phase 3 nodes in the default mode.
+ *
+ * usage: DeepPrunBenchmark [states=100] [seed=42]
+ */
+public class DeepPrunBenchmark {
+
+	public static void main(String[] args) {
+		int n_states = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+
+		test.initTables();
+
+		Edge3.fullDepth = true;
+		long start = System.nanoTime();
+		Edge3.createDepth();
+		System.out.println(String.format("Edge3.createDepth (full) %.2f s", (System.nanoTime() - start) / 1e9));
+
+		Random r = new Random(seed);
+		FullCube[] corpus = new FullCube[n_states];
+		for (int i=0; i<n_states; i++) {
+			corpus[i] = new FullCube(r);
+		}
+
+		Search search = new Search();
+		for (boolean full: new boolean[] {false, true}) {
+			Edge3.fullDepth = full;
+			for (int i=0; i<Math.min(5, n_states); i++) {
+				search.solve(new FullCube(corpus[i]));
+			}
+		}
+
+		long[][] nodes = new long[2][n_states];
+		long[][] nanos = new long[2][n_states];
+		int[][] length = new int[2][n_states];
+		for (int i=0; i<n_states; i++) {
+			for (int mode=0; mode<2; mode++) {
+				Edge3.fullDepth = mode == 1;
+				search.nodes3 = 0;
+				search.solve(new FullCube(corpus[i]));
+				nodes[mode][i] = search.nodes3;
+				nanos[mode][i] = search.time3;
+				length[mode][i] = search.getTotalLength();
+			}
+		}
+		Edge3.fullDepth = false;
+
+		Integer[] order = new Integer[n_states];
+		for (int i=0; i<n_states; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(nodes[0][b], nodes[0][a]));
+		int[] all = new int[n_states];
+		int[] hard = new int[Math.max(1, n_states / 10)];
+		for (int i=0; i<n_states; i++) {
+			all[i] = order[i];
+		}
+		System.arraycopy(all, 0, hard, 0, hard.length);
+
+		String[] names = {"default", "full depth"};
+		for (int mode=0; mode<2; mode++) {
+			report(names[mode] + ", all", all, nodes[mode], nanos[mode], length[mode]);
+		}
+		for (int mode=0; mode<2; mode++) {
+			report(names[mode] + ", hard", hard, nodes[mode], nanos[mode], length[mode]);
+		}
+	}
+
+	private static void report(String name, int[] states, long[] nodes, long[] nanos, int[] length) {
+		long totalNodes = 0;
+		long totalLength = 0;
+		long[] ms = new long[states.length];
+		for (int i=0; i<states.length; i++) {
+			totalNodes += nodes[states[i]];
+			totalLength += length[states[i]];
+			ms[i] = nanos[states[i]];
+		}
+		Arrays.sort(ms);
+		System.out.println(String.format("%-18s %10d phase 3 nodes/solve\tp50 %7.2f ms\tp90 %7.2f ms\tmax %7.2f ms\tlength %.2f",
+			name, totalNodes / states.length, ms[ms.length / 2] / 1e6, ms[ms.length * 9 / 10] / 1e6, ms[ms.length - 1] / 1e6,
+			totalLength * 1.0 / states.length));
+	}
+}
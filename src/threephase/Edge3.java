@@ -1,6 +1,10 @@
 package threephase;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.IntBuffer;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /*
  					13	1	
@@ -27,7 +31,17 @@ public class Edge3 {
 
 	static final int[] prunValues = {1, 4, 16, 55, 324, 1922, 12275, 77640, 485359, 2778197, 11742425, 27492416, 31002941, 31006080};
 	
-	static int[] eprun = new int[N_EPRUN / 16];
+	// heap buffers, or mapped from the table file, see TableFile
+	static IntBuffer eprun = IntBuffer.allocate(N_EPRUN / 16);
+
+	// exact depth of each state, 4 bits per state, 0xf if it is not below MAX_DEPTH
+	static IntBuffer edepth = IntBuffer.allocate(N_EPRUN / 8);
+
+	/**
+	 * Set before the tables are initialized to fill edepth to the end (depth 13) and prune
+	 * phase 3 with it, instead of with eprun which is flat from MAX_DEPTH on.
+	 */
+	public static boolean fullDepth = false;
 
 	static int[] sym2raw = new int[N_SYM];
 	static char[] symstate = new char[N_SYM];
@@ -40,15 +54,25 @@ public class Edge3 {
 	int[] temp;
 	boolean isStd = true;
 
-	static int[][] mvrot = new int[20*8][12];
-	static int[][] mvroto = new int[20*8][12];
+	// row m<<3|r of each holds the 12 entries of move m then rotation r
+	static int[] mvrot = new int[20*8*12];
+	static int[] mvroto = new int[20*8*12];
+
+	// get(4) of the first 4 edges packed in base 12, see getmvrot4
+	static char[] rank4 = new char[12*12*12*12];
 	
 	static int[] factX = {1, 1, 2/2, 6/2, 24/2, 120/2, 720/2, 5040/2, 40320/2, 362880/2, 3628800/2, 39916800/2, 479001600/2};
 
-	static int done = 0;
+	static final AtomicInteger done = new AtomicInteger();
+
+	// the BFS levels of createPrun and createDepth are split in chunks of entries
+	static final int BFS_CHUNK = 1 << 16;
+	static final int BFS_CHUNKS = (N_EPRUN + BFS_CHUNK - 1) / BFS_CHUNK;
+
+	private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
 
 	public static double initStatus() {
-		return done * 1.0 / prunValues[MAX_DEPTH - 1];
+		return done.get() * 1.0 / prunValues[MAX_DEPTH - 1];
 	}
 
 	static void initMvrot() {
@@ -59,14 +83,18 @@ public class Edge3 {
 				e.move(m);
 				e.rotate(r);
 				for (int i=0; i<12; i++) {
-					mvrot[m<<3|r][i] = e.edge[i];
+					mvrot[(m<<3|r) * 12 + i] = e.edge[i];
 				}
 				e.std();
 				for (int i=0; i<12; i++) {
-					mvroto[m<<3|r][i] = e.temp[i];
+					mvroto[(m<<3|r) * 12 + i] = e.temp[i];
 				}
 			}
 		}
+		for (int i=0; i<11880; i++) {
+			e.set(i * factX[8]);
+			rank4[((e.edge[0] * 12 + e.edge[1]) * 12 + e.edge[2]) * 12 + e.edge[3]] = (char) i;
+		}
 	}
 
 	static void initRaw2Sym() {
@@ -95,15 +123,48 @@ public class Edge3 {
 		assert count == 1538;
 	}
 	
-	static void setPruning(int[] table, int index, int value) {
-		table[index >> 4] ^= (0x3 ^ value) << ((index & 0xf) << 1);
+	static void setPruning(IntBuffer table, int index, int value) {
+		table.put(index >> 4, table.get(index >> 4) ^ (0x3 ^ value) << ((index & 0xf) << 1));
+	}
+
+	static int getPruning(IntBuffer table, int index) {
+		return (table.get(index >> 4) >> ((index & 0xf) << 1)) & 0x3;
+	}
+
+	/*
+	 * Sets an unvisited entry (0x3, or 0xf for depths) to value, and tells whether this
+	 * call did it. Threads share the words of a table, so they are updated with a CAS.
+	 */
+	static boolean trySetPruning(int[] table, int index, int value) {
+		int shift = (index & 0xf) << 1;
+		while (true) {
+			int val = (int) INTS.getVolatile(table, index >> 4);
+			if ((val >> shift & 0x3) != 0x3) {
+				return false;
+			}
+			if (INTS.compareAndSet(table, index >> 4, val, val ^ (0x3 ^ value) << shift)) {
+				return true;
+			}
+		}
 	}
 
-	static int getPruning(int[] table, int index) {
-		return (table[index >> 4] >> ((index & 0xf) << 1)) & 0x3;
+	static boolean trySetDepth(int[] table, int index, int value) {
+		int shift = (index & 0x7) << 2;
+		while (true) {
+			int val = (int) INTS.getVolatile(table, index >> 3);
+			if ((val >> shift & 0xf) != 0xf) {
+				return false;
+			}
+			if (INTS.compareAndSet(table, index >> 3, val, val ^ (0xf ^ value) << shift)) {
+				return true;
+			}
+		}
 	}
 
 	static int getprun(int edge, int prun) {
+		if (fullDepth) {
+			return getDepth(edepth, edge);
+		}
 		int depm3 = getPruning(eprun, edge);
 		if (depm3 == 0x3) {
 			return MAX_DEPTH;
@@ -111,123 +172,191 @@ public class Edge3 {
 		return (depm3 - prun + 16) % 3 + prun - 1;
 	}
 
+	static void setDepth(IntBuffer table, int index, int value) {
+		table.put(index >> 3, table.get(index >> 3) ^ (0xf ^ value) << ((index & 0x7) << 2));
+	}
+
+	static int getDepth(IntBuffer table, int index) {
+		return (table.get(index >> 3) >> ((index & 0x7) << 2)) & 0xf;
+	}
+
 	static int getprun(int edge) {
-		Edge3 e = new Edge3();
-		int depth = 0;
-		int depm3 = getPruning(eprun, edge);
-		if (depm3 == 0x3) {
-			return MAX_DEPTH;
-		}
-		while (edge!=0) {
-			if (depm3 == 0) {
-				depm3 = 2;
-			} else {
-				depm3--;
-			}
+		int depth = getDepth(edepth, edge);
+		return depth == 0xf ? MAX_DEPTH : fullDepth ? depth : Math.min(depth, MAX_DEPTH);
+	}
 
-			int symcord1 = edge / N_RAW;
-			int cord1 = sym2raw[symcord1];
-			int cord2 = edge % N_RAW;
-			e.set(cord1 * N_RAW + cord2);
-
-			for (int m=0; m<17; m++) {
-				int cord1x = getmvrot(e.edge, m<<3, 4);
-				int symcord1x = raw2sym[cord1x];
-				int symx = symcord1x & 0x7;
-				symcord1x >>= 3;
-				int cord2x = getmvrot(e.edge, m<<3|symx, 10) % N_RAW;
-				int idx = symcord1x * N_RAW + cord2x;
-				if (getPruning(eprun, idx) == depm3) {
-					depth++;
-					edge = idx;
-					break;
-				}
-			}
+	/**
+	 * Fills edepth with a breadth first search, to the same depth as eprun or, with
+	 * fullDepth, to the end. Like createPrun, the last levels are found from the unvisited
+	 * states, which are fewer than the visited ones by then.
+	 */
+	static void createDepth() {
+		int[] table = new int[N_EPRUN / 8];
+		Arrays.fill(table, -1);
+		edepth = IntBuffer.wrap(table);
+		setDepth(edepth, 0, 0);
+
+		AtomicInteger found = new AtomicInteger(1);
+		for (int depth=0; found.get() != 0 && (fullDepth || depth < MAX_DEPTH - 1); depth++) {
+			int d = depth;
+			found.set(0);
+			ParallelSearch.forEach(BFS_CHUNKS, c -> found.addAndGet(expandDepth(table, c * BFS_CHUNK, Math.min(N_EPRUN, (c + 1) * BFS_CHUNK), d)));
 		}
-		return depth;
-	}	
+	}
 
-	static void createPrun() {
+	// one chunk of a createDepth level, returns the number of states it reached
+	private static int expandDepth(int[] table, int from, int to, int depth) {
 		Edge3 e = new Edge3();
 		Edge3 f = new Edge3();
 		Edge3 g = new Edge3();
+		boolean inv = depth > 10;
+		int find = inv ? 0xf : depth;
+		int found = 0;
+
+		for (int i_=from; i_<to; i_+=8) {
+			int val = table[i_ >> 3];
+			if (!inv && val == -1) {
+				continue;
+			}
+			for (int i=i_, end=i_+8; i<end; i++, val>>=4) {
+				if ((val & 0xf) != find) {
+					continue;
+				}
+				int symcord1 = i / N_RAW;
+				int cord1 = sym2raw[symcord1];
+				int cord2 = i % N_RAW;
+				e.set(cord1 * N_RAW + cord2);
+
+				for (int m=0; m<17; m++) {
+					int cord1x = getmvrot4(e.edge, m<<3);
+					int symcord1x = raw2sym[cord1x];
+					int symx = symcord1x & 0x7;
+					symcord1x >>= 3;
+					int cord2x = getmvrot(e.edge, m<<3|symx, 10) % N_RAW;
+					int idx = symcord1x * N_RAW + cord2x;
+					if (inv) {
+						if (getDepth(edepth, idx) == depth && trySetDepth(table, i, depth + 1)) {
+							found++;
+							break;
+						}
+						continue;
+					}
+					if (!trySetDepth(table, idx, depth + 1)) {
+						continue;
+					}
+					found++;
+					char symState = symstate[symcord1x];
+					if (symState == 1){
+						continue;
+					}
+					f.set(e);
+					f.move(m);
+					f.rotate(symx);
+					for (int j=1; (symState >>= 1) != 0; j++) {
+						if ((symState & 1) != 1) {
+							continue;
+						}
+						g.set(f);
+						g.rotate(j);
+						int idxx = symcord1x * N_RAW + g.get(10) % N_RAW;
+						if (trySetDepth(table, idxx, depth + 1)) {
+							found++;
+						}
+					}
+				}
+			}
+		}
+		return found;
+	}
 
-		Arrays.fill(eprun, -1);
+	static void createPrun() {
+		int[] table = new int[N_EPRUN / 16];
+		Arrays.fill(table, -1);
+		eprun = IntBuffer.wrap(table);
 		int depth = 0;
-		done = 1;
+		done.set(1);
 		setPruning(eprun, 0, 0);
 
-		while (done != N_EPRUN) {
-			boolean inv = depth > 9;
-			int depm3 = depth % 3;
-			int dep1m3 = (depth + 1) % 3;
-			int find = inv ? 0x3 : depm3;
-			int chk = inv ? depm3 : 0x3;
-
+		while (done.get() != N_EPRUN) {
 			if (depth >= MAX_DEPTH - 1) {
 				break;
 			}
+			int d = depth;
+			ParallelSearch.forEach(BFS_CHUNKS, c -> done.addAndGet(expandPrun(table, c * BFS_CHUNK, Math.min(N_EPRUN, (c + 1) * BFS_CHUNK), d)));
+			depth++;
+			System.out.println(depth + "\t" + done.get());
+		}
+	}
 
-			for (int i_=0; i_<N_EPRUN; i_+=16) {
-				int val = eprun[i_ >> 4];
-				if (!inv && val == -1) {
+	/*
+	 * One chunk of a createPrun level, returns the number of entries it set. Chunks of a
+	 * level run in parallel: a state is reached by whichever chunk gets to it first, which
+	 * does not change the value it gets, so the table is the same as with one thread.
+	 */
+	private static int expandPrun(int[] table, int from, int to, int depth) {
+		Edge3 e = new Edge3();
+		Edge3 f = new Edge3();
+		Edge3 g = new Edge3();
+		boolean inv = depth > 9;
+		int depm3 = depth % 3;
+		int dep1m3 = (depth + 1) % 3;
+		int find = inv ? 0x3 : depm3;
+		int found = 0;
+
+		for (int i_=from; i_<to; i_+=16) {
+			int val = table[i_ >> 4];
+			if (!inv && val == -1) {
+				continue;
+			}
+			for (int i=i_, end=i_+16; i<end; i++, val>>=2) {
+				if ((val & 0x3) != find) {
 					continue;
 				}
-				for (int i=i_, end=i_+16; i<end; i++, val>>=2) {
-					if ((val & 0x3) != find) {
-						continue;
-					}
-					int symcord1 = i / N_RAW;
-					int cord1 = sym2raw[symcord1];
-					int cord2 = i % N_RAW;
-					e.set(cord1 * N_RAW + cord2);
-
-					for (int m=0; m<17; m++) {
-						int cord1x = getmvrot(e.edge, m<<3, 4);
-						int symcord1x = raw2sym[cord1x];
-						int symx = symcord1x & 0x7;
-						symcord1x >>= 3;
-						int cord2x = getmvrot(e.edge, m<<3|symx, 10) % N_RAW;
-						int idx = symcord1x * N_RAW + cord2x;
-						if (getPruning(eprun, idx) != chk) {
-							continue;
-						}
-						setPruning(eprun, inv ? i : idx, dep1m3);
-						done++;
-						// if ((done & 0x3ffff) == 0) {
-						// 	System.out.print(String.format("%d\r", done));
-						// }
-						if (inv) {
+				int symcord1 = i / N_RAW;
+				int cord1 = sym2raw[symcord1];
+				int cord2 = i % N_RAW;
+				e.set(cord1 * N_RAW + cord2);
+
+				for (int m=0; m<17; m++) {
+					int cord1x = getmvrot4(e.edge, m<<3);
+					int symcord1x = raw2sym[cord1x];
+					int symx = symcord1x & 0x7;
+					symcord1x >>= 3;
+					int cord2x = getmvrot(e.edge, m<<3|symx, 10) % N_RAW;
+					int idx = symcord1x * N_RAW + cord2x;
+					if (inv) {
+						if (getPruning(eprun, idx) == depm3 && trySetPruning(table, i, dep1m3)) {
+							found++;
 							break;
 						}
-						char symState = symstate[symcord1x];
-						if (symState == 1){
+						continue;
+					}
+					if (!trySetPruning(table, idx, dep1m3)) {
+						continue;
+					}
+					found++;
+					char symState = symstate[symcord1x];
+					if (symState == 1){
+						continue;
+					}
+					f.set(e);
+					f.move(m);
+					f.rotate(symx);
+					for (int j=1; (symState >>= 1) != 0; j++) {
+						if ((symState & 1) != 1) {
 							continue;
 						}
-						f.set(e);
-						f.move(m);
-						f.rotate(symx);
-						for (int j=1; (symState >>= 1) != 0; j++) {
-							if ((symState & 1) != 1) {
-								continue;
-							}
-							g.set(f);
-							g.rotate(j);
-							int idxx = symcord1x * N_RAW + g.get(10) % N_RAW;
-							if (getPruning(eprun, idxx) == chk) {
-								setPruning(eprun, idxx, dep1m3);
-								done++;
-								// if ((done & 0x3ffff) == 0) {
-								// 	System.out.print(String.format("%d\r", done));
-								// }
-							}
+						g.set(f);
+						g.rotate(j);
+						int idxx = symcord1x * N_RAW + g.get(10) % N_RAW;
+						if (trySetPruning(table, idxx, dep1m3)) {
+							found++;
 						}
 					}
 				}
 			}
-			depth++;
-			System.out.println(depth + "\t" + done);
 		}
+		return found;
 	}
 
 	static int[] FullEdgeMap = {0, 2, 4, 6, 1, 3, 7, 5, 8, 9, 10, 11};
@@ -277,14 +406,15 @@ public class Edge3 {
 	}
 
 	static int getmvrot(int[] ep, int mrIdx, int end) {
-		int[] movo = mvroto[mrIdx];
-		int[] mov = mvrot[mrIdx];
+		int[] movo = mvroto;
+		int[] mov = mvrot;
+		int row = mrIdx * 12;
 		int idx = 0;
 
 		if (IS_64BIT_PLATFORM) {
 			long val = 0xba9876543210L;
 			for (int i=0; i<end; i++) {
-				int v = movo[ep[mov[i]]] << 2;
+				int v = movo[row + ep[mov[row + i]]] << 2;
 				idx *= 12 - i;
 				idx += (val >> v) & 0xf;
 				val -= 0x111111111110L << v;
@@ -293,7 +423,7 @@ public class Edge3 {
 			int vall = 0x76543210;
 			int valh = 0xba98;
 			for (int i=0; i<end; i++) {
-				int v = movo[ep[mov[i]]] << 2;
+				int v = movo[row + ep[mov[row + i]]] << 2;
 				idx *= 12 - i;
 				if (v >= 32) {
 					idx += (valh >> (v - 32)) & 0xf;
@@ -309,6 +439,32 @@ public class Edge3 {
 
 	}
 
+	/**
+	 * Same as getmvrot(ep, mrIdx, 4), with one table lookup instead of the ranking loop.
+	 * The 4 edge coordinate is not closed under moves (its image depends on the other 8
+	 * edges as well), so it can not have a move table of its own.
+	 */
+	static int getmvrot4(int[] ep, int mrIdx) {
+		int[] movo = mvroto;
+		int[] mov = mvrot;
+		int row = mrIdx * 12;
+		return rank4[((movo[row + ep[mov[row]]] * 12 + movo[row + ep[mov[row + 1]]]) * 12
+				+ movo[row + ep[mov[row + 2]]]) * 12 + movo[row + ep[mov[row + 3]]]];
+	}
+
+	/**
+	 * Writes the permutation that getmvrot(ep, mrIdx, 10) ranks into out, so that a child
+	 * state is available without set(int).
+	 */
+	static void mvrot(int[] ep, int mrIdx, int[] out) {
+		int[] movo = mvroto;
+		int[] mov = mvrot;
+		int row = mrIdx * 12;
+		for (int i=0; i<12; i++) {
+			out[i] = movo[row + ep[mov[row + i]]];
+		}
+	}
+
 	void std() {
 		if (temp == null) {
 			temp = new int[12];
@@ -145,15 +145,36 @@ public class FullCube implements Comparable<FullCube> {
 		}
 	}
 
-	@Override
-	public String toString() {
+	/**
+	 * Colors of the 96 facelets in URFDLB order. Centers of one color are interchangeable,
+	 * so two cubes are the same state exactly when their facelets are equal.
+	 */
+	byte[] getFacelet() {
 		getEdge();
 		getCenter();
 		getCorner();
-
 		byte[] f = new byte[96];
-		StringBuffer sb = new StringBuffer();
 		toFacelet(f);
+		return f;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof FullCube) {
+			return Arrays.equals(getFacelet(), ((FullCube) obj).getFacelet());
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(getFacelet());
+	}
+
+	@Override
+	public String toString() {
+		byte[] f = getFacelet();
+		StringBuffer sb = new StringBuffer();
 		for (int i=0; i<96; i++) {
 			sb.append("URFDLB".charAt(f[i]));
 			if (i % 4 == 3) {
@@ -177,6 +198,7 @@ public class FullCube implements Comparable<FullCube> {
 	private CornerCube corner;
 
 	int value = 0;
+	double cost = 0;
 	boolean add1 = false;
 	int length1 = 0;
 	int length2 = 0;
@@ -184,7 +206,10 @@ public class FullCube implements Comparable<FullCube> {
 
 	@Override
 	public int compareTo(FullCube c) {
-		return value - c.value;
+		if (value != c.value) {
+			return value - c.value;
+		}
+		return Double.compare(cost, c.cost);
 	}
 
 	public FullCube() {
@@ -217,6 +242,7 @@ public class FullCube implements Comparable<FullCube> {
 		corner.copy(c.corner);
 
 		this.value = c.value;
+		this.cost = c.cost;
 		this.add1 = c.add1;
 		this.length1 = c.length1;
 		this.length2 = c.length2;
@@ -238,22 +264,10 @@ public class FullCube implements Comparable<FullCube> {
 	}
 
 	public String getMoveString(boolean inverse, boolean rotation) {
-		int[] fixedMoves = new int[moveLength - (add1 ? 2 : 0)];
-		int idx = 0;
-		for (int i=0; i<length1; i++) {
-			fixedMoves[idx++] = moveBuffer[i];
-		}
-		int sym = this.sym;
-		for (int i=length1 + (add1 ? 2 : 0); i<moveLength; i++) {
-			if (symmove[sym][moveBuffer[i]] >= dx1) {
-				fixedMoves[idx++] = symmove[sym][moveBuffer[i]] - 9;
-				int rot = move2rot[symmove[sym][moveBuffer[i]] - dx1];
-				sym = symmult[sym][rot];
-			} else {
-				fixedMoves[idx++] = symmove[sym][moveBuffer[i]];
-			}
-		}
-		int finishSym = symmult[syminv[sym]][Center1.getSolvedSym(getCenter())];
+		byte[] fixedMoves = new byte[moveLength - (add1 ? 2 : 0)];
+		int idx = fixedMoves.length;
+		int sym = fixMoves(fixedMoves, 0);
+		int finishSym = symmult(syminv[sym], Center1.getSolvedSym(getCenter()));
 		
 		StringBuffer sb = new StringBuffer();
 		sym = finishSym;
@@ -261,12 +275,12 @@ public class FullCube implements Comparable<FullCube> {
 			for (int i=idx-1; i>=0; i--) {
 				int move = fixedMoves[i];
 				move = move / 3 * 3 + (2 - move % 3);
-				if (symmove[sym][move] >= dx1) {
-					sb.append(move2str[symmove[sym][move] - 9]).append(' ');
-					int rot = move2rot[symmove[sym][move] - dx1];
-					sym = symmult[sym][rot];
+				if (symmove(sym, move) >= dx1) {
+					sb.append(move2str[symmove(sym, move) - 9]).append(' ');
+					int rot = move2rot[symmove(sym, move) - dx1];
+					sym = symmult(sym, rot);
 				} else {
-					sb.append(move2str[symmove[sym][move]]).append(' ');
+					sb.append(move2str[symmove(sym, move)]).append(' ');
 				}
 			}
 			if (rotation) {
@@ -284,45 +298,92 @@ public class FullCube implements Comparable<FullCube> {
 	}
 
 	public Byte[] getMoveBytes(boolean inverse) {
-		int[] fixedMoves = new int[moveLength - (add1 ? 2 : 0)];
-		int idx = 0;
-		for (int i=0; i<length1; i++) {
-			fixedMoves[idx++] = moveBuffer[i];
-		}
-		int sym = this.sym;
-		for (int i=length1 + (add1 ? 2 : 0); i<moveLength; i++) {
-			if (symmove[sym][moveBuffer[i]] >= dx1) {
-				fixedMoves[idx++] = symmove[sym][moveBuffer[i]] - 9;
-				int rot = move2rot[symmove[sym][moveBuffer[i]] - dx1];
-				sym = symmult[sym][rot];
-			} else {
-				fixedMoves[idx++] = symmove[sym][moveBuffer[i]];
-			}
+		byte[] buf = new byte[moveLength];
+		Byte[] byteMoves = new Byte[getMoveBytes(inverse, buf, 0)];
+		for (int i=0; i<byteMoves.length; i++) {
+			byteMoves[i] = buf[i];
 		}
-		int finishSym = symmult[syminv[sym]][Center1.getSolvedSym(getCenter())];
-		
-		ArrayList<Byte> byteMoves = new ArrayList<>();
+		return byteMoves;
+	}
+
+	/**
+	 * Same as getMoveBytes(inverse), but writes the moves to out[offset..] without
+	 * allocating. Returns the number of moves written, at most moveLength.
+	 */
+	public int getMoveBytes(boolean inverse, byte[] out, int offset) {
+		int idx = moveLength - (add1 ? 2 : 0);
+		int sym = fixMoves(out, offset);
+		int finishSym = symmult(syminv[sym], Center1.getSolvedSym(getCenter()));
+
 		sym = finishSym;
 		if (inverse) {
-			for (int i=idx-1; i>=0; i--) {
-				int move = fixedMoves[i];
+			for (int i=offset, j=offset+idx-1; i<j; i++, j--) {
+				byte t = out[i];
+				out[i] = out[j];
+				out[j] = t;
+			}
+			for (int i=offset; i<offset+idx; i++) {
+				int move = out[i];
 				move = move / 3 * 3 + (2 - move % 3);
-				if (symmove[sym][move] >= dx1) {
-					byteMoves.add(move2byte[symmove[sym][move] - 9]);
-					int rot = move2rot[symmove[sym][move] - dx1];
-					sym = symmult[sym][rot];
+				if (symmove(sym, move) >= dx1) {
+					out[i] = move2byte[symmove(sym, move) - 9];
+					int rot = move2rot[symmove(sym, move) - dx1];
+					sym = symmult(sym, rot);
 				} else {
-					byteMoves.add(move2byte[symmove[sym][move]]);
+					out[i] = move2byte[symmove(sym, move)];
 				}
 			}
 		} else {
-			for (int i=0; i<idx; i++) {
-				byteMoves.add(move2byte[fixedMoves[i]]);
+			for (int i=offset; i<offset+idx; i++) {
+				out[i] = move2byte[out[i]];
 			}
 		}
-		return byteMoves.toArray(new Byte[0]);
+		return idx;
 	}
 	
+	/**
+	 * Writes the moves so far to fixedMoves[offset..], in the frame of the starting orientation
+	 * (the two centre-fixing moves of add1 are skipped). Returns the symmetry reached.
+	 */
+	private int fixMoves(byte[] fixedMoves, int offset) {
+		int idx = offset;
+		for (int i=0; i<length1; i++) {
+			fixedMoves[idx++] = moveBuffer[i];
+		}
+		int sym = this.sym;
+		for (int i=length1 + (add1 ? 2 : 0); i<moveLength; i++) {
+			if (symmove(sym, moveBuffer[i]) >= dx1) {
+				fixedMoves[idx++] = (byte) (symmove(sym, moveBuffer[i]) - 9);
+				int rot = move2rot[symmove(sym, moveBuffer[i]) - dx1];
+				sym = symmult(sym, rot);
+			} else {
+				fixedMoves[idx++] = (byte) symmove(sym, moveBuffer[i]);
+			}
+		}
+		return sym;
+	}
+
+	/**
+	 * The moves fixed so far as move indices, without the final cube rotation.
+	 * Returns the number of moves.
+	 */
+	int getFixedMoves(byte[] out) {
+		fixMoves(out, 0);
+		return moveLength - (add1 ? 2 : 0);
+	}
+
+	/**
+	 * The moves fixed so far in move2byte encoding, without the final cube rotation.
+	 * Unlike getMoveBytes this works on partial solutions. Returns the number of moves.
+	 */
+	int getFixedMoveBytes(byte[] out) {
+		int length = getFixedMoves(out);
+		for (int i=0; i<length; i++) {
+			out[i] = move2byte[out[i]];
+		}
+		return length;
+	}
+
 	private static int[] move2rot = {35, 1, 34, 2, 4, 6, 22, 5, 19};
 	 
 	String to333Facelet() {
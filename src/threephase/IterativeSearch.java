@@ -0,0 +1,247 @@
+package threephase;
+
+import static threephase.Center1.csprun;
+import static threephase.Center1.ctsmv;
+import static threephase.Center1.symmove;
+import static threephase.Center1.symmult;
+import static threephase.Center2.ctmv;
+import static threephase.Center2.ctprun;
+import static threephase.Center2.rlmv;
+import static threephase.Moves.*;
+
+/**
+ * Explicit stack versions of Search.search1/2/3. They visit the same nodes in the same
+ * order, so they find the same solutions, but each phase runs as a single loop over
+ * int[] frames (coordinates, next move to try, last move) instead of recursive calls.
+ * Frame i holds depth base+i, its depth bound is maxl-i.
+ */
+final class IterativeSearch {
+
+	private static final int MAX_DEPTH = 32;
+
+	private final Search s;
+
+	private final int[] fct = new int[MAX_DEPTH];
+	private final int[] fsym = new int[MAX_DEPTH];
+	private final int[] flm = new int[MAX_DEPTH];
+	private final int[] fm = new int[MAX_DEPTH];
+	private final int[] fedge = new int[MAX_DEPTH];
+	private final int[] fprun = new int[MAX_DEPTH];
+
+	IterativeSearch(Search s) {
+		this.s = s;
+	}
+
+	private boolean cancelled() {
+		return s.cancelled || s.cutoff != null && s.cutoff.isCancelled(s.taskIndex);
+	}
+
+	boolean search1(int ct, int sym, int maxl, int lm, int base) {
+		int[] move1 = s.move1;
+		int d = 0;
+		fct[0] = ct;
+		fsym[0] = sym;
+		flm[0] = lm;
+		boolean enter = true;
+		while (true) {
+			if (enter) {
+				s.nodes1++;
+				if (cancelled()) {
+					return true;
+				}
+				int l = maxl - d;
+				if (fct[d] == 0 && l < 5) {
+					if (l == 0 && s.init2(fsym[d], flm[d])) {
+						return true;
+					}
+					if (--d < 0) {
+						return false;
+					}
+				} else {
+					fm[d] = 0;
+				}
+			}
+			enter = false;
+			int l = maxl - d;
+			int c = fct[d];
+			int sy = fsym[d];
+			int last = flm[d];
+			int m = fm[d];
+			while (m < 27) {
+				int axis = m / 3 * 3;
+				if (m == axis && (axis == last || axis == last - 9 || axis == last - 18)) {
+					m += 3;
+					continue;
+				}
+				int ctx = ctsmv(c, symmove(sy, m));
+				int prun = csprun[ctx>>>6];
+				if (prun >= l) {
+					s.pruned1++;
+					m = prun > l ? axis + 3 : m + 1;
+					continue;
+				}
+				move1[base + d] = m;
+				fm[d] = m + 1;
+				d++;
+				fct[d] = ctx>>>6;
+				fsym[d] = symmult(sy, ctx&0x3f);
+				flm[d] = axis;
+				enter = true;
+				break;
+			}
+			if (!enter && --d < 0) {
+				return false;
+			}
+		}
+	}
+
+	boolean search2(int ct, int rl, int maxl, int lm, int base) {
+		int[] move2 = s.move2;
+		int d = 0;
+		fct[0] = ct;
+		fsym[0] = rl;
+		flm[0] = lm;
+		boolean enter = true;
+		while (true) {
+			if (enter) {
+				s.nodes2++;
+				if (cancelled()) {
+					return true;
+				}
+				if (fct[d] == 0 && ctprun[fsym[d]] == 0 && maxl - d == 0) {
+					if (s.init3()) {
+						return true;
+					}
+					if (--d < 0) {
+						return false;
+					}
+				} else {
+					fm[d] = 0;
+				}
+			}
+			enter = false;
+			int l = maxl - d;
+			int c = fct[d];
+			int r = fsym[d];
+			int last = flm[d];
+			for (int m=fm[d]; m<23; m++) {
+				if (ckmv2[last][m]) {
+					m = skipAxis2[m];
+					continue;
+				}
+				int ctx = ctmv(c, m);
+				int rlx = rlmv(r, m);
+				int prun = ctprun[ctx * 70 + rlx];
+				if (prun >= l) {
+					s.pruned2++;
+					if (prun > l) {
+						m = skipAxis2[m];
+					}
+					continue;
+				}
+				move2[base + d] = move2std[m];
+				fm[d] = m + 1;
+				d++;
+				fct[d] = ctx;
+				fsym[d] = rlx;
+				flm[d] = m;
+				enter = true;
+				break;
+			}
+			if (!enter && --d < 0) {
+				return false;
+			}
+		}
+	}
+
+	boolean search3(int edge, int ct, int prun, int maxl, int lm, int base) {
+		boolean tables = s.edge3_tables;
+		int[] move3 = s.move3;
+		Edge3[] tempe = s.tempe;
+		int d = 0;
+		fedge[0] = edge;
+		fct[0] = ct;
+		fprun[0] = prun;
+		flm[0] = lm;
+		boolean enter = true;
+		while (true) {
+			if (enter) {
+				s.nodes3++;
+				// the recursive version fails every remaining node, which ends the same way
+				if (cancelled()) {
+					return false;
+				}
+				if (maxl - d == 0) {
+					if (fedge[d] == 0 && fprun[d] == 0 && fct[d] == 0) {
+						return true;
+					}
+					if (--d < 0) {
+						return false;
+					}
+				} else {
+					if (!tables) {
+						tempe[base + d].set(fedge[d]);
+					}
+					fm[d] = 0;
+				}
+			}
+			enter = false;
+			int l = maxl - d;
+			int c = fct[d];
+			int p = fprun[d];
+			int last = flm[d];
+			int[] ep = tempe[base + d].edge;
+			for (int m=fm[d]; m<17; m++) {
+				if (ckmv3[last][m]) {
+					m = skipAxis3[m];
+					continue;
+				}
+				int ctx = Center3.ctmove(c, m);
+				int prun1 = Center3.prun[ctx];
+				if (prun1 >= l) {
+					s.pruned3++;
+					if (prun1 > l && m < 14) {
+						m = skipAxis3[m];
+					}
+					continue;
+				}
+				int edgex = 0;
+				int cord1x;
+				if (tables) {
+					cord1x = Edge3.getmvrot4(ep, m<<3);
+				} else {
+					edgex = Edge3.getmvrot(ep, m<<3, 10);
+					cord1x = edgex / Edge3.N_RAW;
+				}
+				int symcord1x = Edge3.raw2sym[cord1x];
+				int symx = symcord1x & 0x7;
+				symcord1x >>= 3;
+				int cord2x = Edge3.getmvrot(ep, m<<3|symx, 10) % Edge3.N_RAW;
+
+				int prunx = Edge3.getprun(symcord1x * Edge3.N_RAW + cord2x, p);
+				if (prunx >= l) {
+					s.pruned3++;
+					if (prunx > l && m < 14) {
+						m = skipAxis3[m];
+					}
+					continue;
+				}
+				if (tables && l > 1) {
+					Edge3.mvrot(ep, m<<3, tempe[base + d + 1].edge);
+				}
+				move3[base + d] = m;
+				fm[d] = m + 1;
+				d++;
+				fedge[d] = edgex;
+				fct[d] = ctx;
+				fprun[d] = prunx;
+				flm[d] = m;
+				enter = true;
+				break;
+			}
+			if (!enter && --d < 0) {
+				return false;
+			}
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package threephase;
+
+/**
+ * Receives moves in move2byte encoding as soon as they are known, see Search.streamSolve.
+ */
+public interface MoveSink {
+
+	void accept(byte[] moves, int offset, int length);
+}
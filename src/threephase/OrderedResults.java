@@ -0,0 +1,65 @@
+package threephase;
+
+import java.util.*;
+
+/**
+ * Collects the results of a list of search tasks that the sequential solver would
+ * have run in index order, stopping once the first `capacity` results are known.
+ *
+ * A task that is still running counts as having no results yet, so the cutoff only
+ * ever moves towards lower indices. Tasks after the cutoff can never contribute to
+ * the first `capacity` results and should give up as soon as they notice. All tasks
+ * give up once the Search that owns the stage is cancelled.
+ */
+final class OrderedResults<T> {
+
+	private final Search owner;
+	private final int[] counts;
+	private final Object[] results;
+	private final int capacity;
+	private volatile int cutoff;
+
+	OrderedResults(Search owner, int tasks, int capacity) {
+		this.owner = owner;
+		counts = new int[tasks];
+		results = new Object[tasks];
+		this.capacity = capacity;
+		cutoff = capacity > 0 ? tasks : -1;
+	}
+
+	int capacity() {
+		return capacity;
+	}
+
+	boolean isCancelled(int index) {
+		return index > cutoff || owner.cancelled;
+	}
+
+	synchronized void complete(int index, int count, T result) {
+		counts[index] = count;
+		results[index] = result;
+		int sum = 0;
+		for (int i=0; i<=cutoff && i<counts.length; i++) {
+			sum += counts[i];
+			if (sum >= capacity) {
+				cutoff = i;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * The results of every task up to and including the cutoff, in index order.
+	 * Only valid once all tasks have completed.
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized List<T> get() {
+		ArrayList<T> ret = new ArrayList<T>();
+		for (int i=0; i<=cutoff && i<results.length; i++) {
+			if (results[i] != null) {
+				ret.add((T) results[i]);
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,346 @@
+package threephase;
+
+import static threephase.Center1.symmult;
+import static threephase.Center1.ctsmv;
+import static threephase.Center1.csprun;
+import static threephase.Center1.symmove;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+
+/**
+ * Fork/join versions of the phase searches in Search.
+ *
+ * Every stage is cut into tasks that the sequential solver would have run one after
+ * another. Each task runs on a worker's own Search instance (its scratch context) and
+ * its results are merged back in task order, so the outcome for a given cube is the
+ * same as with the sequential search. The phase limits are read from the calling Search,
+ * and the nodes and prunes of the workers are added to its counters.
+ */
+final class ParallelSearch {
+
+	static final int PHASE1_SPLIT_DEPTH = 2;
+
+	static int parallelism = Runtime.getRuntime().availableProcessors();
+
+	private static ForkJoinPool pool;
+
+	private static final ThreadLocal<Search> workers = ThreadLocal.withInitial(Search::new);
+
+	static synchronized ForkJoinPool pool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(parallelism);
+		}
+		return pool;
+	}
+
+	static Search worker() {
+		return workers.get();
+	}
+
+	/**
+	 * Runs body for 0..n-1 on the pool. Ranges are split in half and the lower half
+	 * is run first, so tasks are mostly started in index order.
+	 */
+	static void forEach(int n, IntConsumer body) {
+		if (n > 0) {
+			pool().invoke(new RangeTask(0, n, body));
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static class RangeTask extends RecursiveAction {
+		final int from;
+		final int to;
+		final IntConsumer body;
+
+		RangeTask(int from, int to, IntConsumer body) {
+			this.from = from;
+			this.to = to;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				body.accept(from);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new RangeTask(from, mid, body), new RangeTask(mid, to, body));
+		}
+	}
+
+	/**
+	 * init2 hits of one phase-1 task, in the order they were found.
+	 * Each record is value, sym, add1, move count, moves.
+	 */
+	static final class Phase1Hits {
+		byte[] buf = new byte[256];
+		int size = 0;
+		int count = 0;
+
+		void add(FullCube c1, int[] move1, int n) {
+			if (size + n + 4 > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + n + 4));
+			}
+			buf[size++] = (byte) c1.value;
+			buf[size++] = (byte) c1.sym;
+			buf[size++] = (byte) (c1.add1 ? 1 : 0);
+			buf[size++] = (byte) n;
+			for (int i=0; i<n; i++) {
+				buf[size++] = (byte) move1[i];
+			}
+			count++;
+		}
+	}
+
+	/**
+	 * A node of the phase-1 tree at which a task starts.
+	 */
+	static final class Frame {
+		final int ct, sym, maxl, lm, depth;
+		final int[] moves;
+
+		Frame(int ct, int sym, int maxl, int lm, int depth, int[] moves) {
+			this.ct = ct;
+			this.sym = sym;
+			this.maxl = maxl;
+			this.lm = lm;
+			this.depth = depth;
+			this.moves = Arrays.copyOf(moves, depth);
+		}
+	}
+
+	/**
+	 * Expands the phase-1 tree down to PHASE1_SPLIT_DEPTH exactly like Search.search1 would,
+	 * collecting the nodes in the order the sequential search visits them.
+	 */
+	static void split1(ArrayList<Frame> frames, int ct, int sym, int maxl, int lm, int depth, int[] moves) {
+		if (depth == PHASE1_SPLIT_DEPTH || ct==0 && maxl < 5) {
+			frames.add(new Frame(ct, sym, maxl, lm, depth, moves));
+			return;
+		}
+		for (int axis=0; axis<27; axis+=3) {
+			if (axis == lm || axis == lm - 9 || axis == lm - 18) {
+				continue;
+			}
+			for (int power=0; power<3; power++) {
+				int m = axis + power;
+				int ctx = ctsmv(ct, symmove(sym, m));
+				int prun = csprun[ctx>>>6];
+				if (prun >= maxl) {
+					if (prun > maxl) {
+						break;
+					}
+					continue;
+				}
+				int symx = symmult(sym, ctx&0x3f);
+				ctx>>>=6;
+				moves[depth] = m;
+				split1(frames, ctx, symx, maxl-1, axis, depth+1, moves);
+			}
+		}
+	}
+
+	/**
+	 * Phase 1 of Search.search() on the pool. axes holds the {ct, sym, prun} of the
+	 * rl, ud and fb reductions, in the order the sequential search tries them.
+	 */
+	static void phase1(Search s, int[][] axes) {
+		int minprun = 100;
+		for (int[] axis: axes) {
+			minprun = Math.min(minprun, axis[2]);
+		}
+		int[] moves = new int[PHASE1_SPLIT_DEPTH];
+		for (int length1=minprun; length1<100; length1++) {
+			ArrayList<Frame> frames = new ArrayList<Frame>();
+			for (int[] axis: axes) {
+				if (axis[2] <= length1) {
+					split1(frames, axis[0], axis[1], length1, -1, 0, moves);
+				}
+			}
+			final int len = length1;
+			final OrderedResults<Phase1Hits> results = new OrderedResults<Phase1Hits>(s, frames.size(), s.profile.phase1Solutions - s.p1SolsCnt);
+			forEach(frames.size(), i -> {
+				Frame f = frames.get(i);
+				Search w = worker();
+				w.c = s.c;
+				w.length1 = len;
+				w.p1SolsCnt = 0;
+				w.p1limit = results.capacity();
+				w.p1hits = new Phase1Hits();
+				w.cutoff = results;
+				w.taskIndex = i;
+				w.iterative_search = s.iterative_search;
+				System.arraycopy(f.moves, 0, w.move1, 0, f.depth);
+				long nodes = w.nodes1, pruned = w.pruned1;
+				try {
+					w.dfs1(f.ct, f.sym, f.maxl, f.lm, f.depth);
+					results.complete(i, w.p1hits.count, w.p1hits);
+				} finally {
+					w.p1hits = null;
+					w.cutoff = null;
+					synchronized (s.stats) {
+						s.nodes1 += w.nodes1 - nodes;
+						s.pruned1 += w.pruned1 - pruned;
+					}
+				}
+			});
+
+			for (Phase1Hits hits: results.get()) {
+				for (int p=0; p<hits.size && s.p1SolsCnt < s.profile.phase1Solutions; ) {
+					int value = hits.buf[p++];
+					int sym = hits.buf[p++];
+					boolean add1 = hits.buf[p++] != 0;
+					int n = hits.buf[p++];
+					s.c1.copy(s.c);
+					for (int j=0; j<n; j++) {
+						s.c1.move(hits.buf[p++]);
+					}
+					s.c1.value = value;
+					s.c1.length1 = n - (add1 ? 2 : 0);
+					s.c1.add1 = add1;
+					s.c1.sym = sym;
+					s.p1SolsCnt++;
+					s.addP1Sol();
+				}
+			}
+			if (s.p1SolsCnt == s.profile.phase1Solutions || s.cancelled) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * One pass of the phase-2 loop of Search.search() on the pool: for each length12 the
+	 * candidates of p1SolsArr that fit are searched concurrently, each on its own Center2,
+	 * and their init3 hits are appended to s.arr2 in candidate order until it is full.
+	 * Returns the length12 at which arr2 filled up, or 100 if it did not.
+	 */
+	static int phase2(Search s, FullCube[] p1SolsArr, int maxLength2) {
+		for (int length12=p1SolsArr[0].value; length12<100; length12++) {
+			ArrayList<FullCube> cands = new ArrayList<FullCube>();
+			for (int i=0; i<p1SolsArr.length; i++) {
+				if (p1SolsArr[i].value > length12) {
+					break;
+				}
+				if (length12 - p1SolsArr[i].length1 > maxLength2) {
+					continue;
+				}
+				cands.add(p1SolsArr[i]);
+			}
+
+			final int len = length12;
+			final OrderedResults<FullCube[]> results = new OrderedResults<FullCube[]>(s, cands.size(), s.profile.phase2Solutions - s.arr2idx);
+			forEach(cands.size(), i -> {
+				FullCube cand = cands.get(i);
+				Search w = worker();
+				w.c1.copy(cand);
+				w.ct2.set(w.c1.getCenter(), w.c1.getEdge().getParity());
+				int s2ct = w.ct2.getct();
+				int s2rl = w.ct2.getrl();
+				w.length1 = cand.length1;
+				w.length2 = len - cand.length1;
+				w.arr2idx = 0;
+				w.arr2limit = results.capacity();
+				if (w.arr2.length < w.arr2limit) {
+					w.arr2 = Arrays.copyOf(w.arr2, w.arr2limit);
+				}
+				w.cutoff = results;
+				w.taskIndex = i;
+				w.iterative_search = s.iterative_search;
+				long nodes = w.nodes2, pruned = w.pruned2;
+				try {
+					w.dfs2(s2ct, s2rl, w.length2, 28, 0);
+					FullCube[] found = new FullCube[w.arr2idx];
+					for (int j=0; j<found.length; j++) {
+						found[j] = new FullCube(w.arr2[j]);
+					}
+					results.complete(i, found.length, found);
+				} finally {
+					w.arr2limit = w.profile.phase2Solutions;
+					w.cutoff = null;
+					synchronized (s.stats) {
+						s.nodes2 += w.nodes2 - nodes;
+						s.pruned2 += w.pruned2 - pruned;
+					}
+				}
+			});
+
+			for (FullCube[] found: results.get()) {
+				for (int j=0; j<found.length && s.arr2idx < s.profile.phase2Solutions; j++) {
+					s.arr2[s.arr2idx++] = found[j];
+				}
+			}
+			if (s.arr2idx == s.profile.phase2Solutions || s.cancelled) {
+				return length12;
+			}
+		}
+		return 100;
+	}
+
+	/**
+	 * One pass of the phase-3 loop of Search.search() on the pool. For each length123 the
+	 * first phase3Attempts entries of arr2 are searched concurrently, each with its own
+	 * Edge3/Center3 scratch and tempe stack. The `want` lowest indices that succeed win
+	 * and the tasks after them are cancelled.
+	 * Returns the winners as {arr2 index, moves...}, empty if nothing was found.
+	 */
+	static List<int[]> phase3(Search s, int maxLength3, int want) {
+		FullCube[] arr2 = s.arr2;
+		for (int length123=arr2[0].value; length123<100; length123++) {
+			ArrayList<Integer> cands = new ArrayList<Integer>();
+			for (int i=0; i<Math.min(s.arr2idx, s.profile.phase3Attempts); i++) {
+				if (arr2[i].value > length123) {
+					break;
+				}
+				if (length123 - arr2[i].length1 - arr2[i].length2 > maxLength3) {
+					continue;
+				}
+				cands.add(i);
+			}
+
+			final int len = length123;
+			final OrderedResults<int[]> results = new OrderedResults<int[]>(s, cands.size(), want);
+			forEach(cands.size(), i -> {
+				Search w = worker();
+				w.c2.copy(arr2[cands.get(i)]);
+				int eparity = w.e12.set(w.c2.getEdge());
+				w.ct3.set(w.c2.getCenter(), eparity ^ w.c2.getCorner().getParity());
+				int ct = w.ct3.getct();
+				int edge = w.e12.get(10);
+				int prun = Edge3.getprun(w.e12.getsym());
+				int maxl = len - w.c2.length1 - w.c2.length2;
+				w.cutoff = results;
+				w.taskIndex = i;
+				w.iterative_search = s.iterative_search;
+				w.edge3_tables = s.edge3_tables;
+				long nodes = w.nodes3, pruned = w.pruned3;
+				try {
+					if (prun <= maxl && w.dfs3(edge, ct, prun, maxl, 20, 0)) {
+						int[] sol = new int[maxl + 1];
+						sol[0] = cands.get(i);
+						System.arraycopy(w.move3, 0, sol, 1, maxl);
+						results.complete(i, 1, sol);
+					} else {
+						results.complete(i, 0, null);
+					}
+				} finally {
+					w.cutoff = null;
+					synchronized (s.stats) {
+						s.nodes3 += w.nodes3 - nodes;
+						s.pruned3 += w.pruned3 - pruned;
+					}
+				}
+			});
+
+			List<int[]> found = results.get();
+			if (!found.isEmpty() || s.cancelled) {
+				return found;
+			}
+		}
+		return new ArrayList<int[]>();
+	}
+}
@@ -0,0 +1,163 @@
+package threephase;
+
+/**
+ * Execution time estimate for the ARCS4 robot. It replays the greedy planner of
+ * executeSolveSequence() in ARCS4-1.0.ino, including the orientation algebra, and
+ * charges every rotate(), flip() and setHeight() it would perform.
+ *
+ * orientation = m5m4m3m2m1m0, m5m4m3 = upward face, m2m1m0 = front face
+ * face = m2m1m0, m1m0 = axis (UD, RL, FB), m2 = primary(0)/secondary(1) face
+ *
+ * The default timings follow the stepper settings of the sketch: every motor runs at
+ * one revolution per second with near-instant acceleration.
+ */
+public class RobotCostModel implements CostModel {
+
+	static final int HEIGHT_FLIP = 0;
+	static final int HEIGHT_DEPTH4 = 4;
+
+	static final int FACE_BITS = 3;
+	static final int AXIS_MASK = 0x3;
+	static final int PYSY_MASK = 0x4;
+	static final int UP_FACE_MASK = 0x38;
+	static final int FRONT_FACE_MASK = 0x7;
+
+	static final int MOVE_MAG = 0x20;
+	static final int MOVE_DEPTH = 0x08;
+
+	static final int ORIENT_UF = 2;
+
+	public double quarterTurn = 0.25;
+	public double halfTurn = 0.5;
+	public double flip = 0.25;
+	public double elevatorMmPerSec = 79.79664;
+	public double[] elevatorMm = {0, 50, 65, 80, 95};
+
+	@Override
+	public double cost(byte[] moves, int length) {
+		return simulate(moves, length).time;
+	}
+
+	public double cost(Byte[] moves) {
+		byte[] arr = new byte[moves.length];
+		for (int i=0; i<arr.length; i++) {
+			arr[i] = moves[i];
+		}
+		return cost(arr, arr.length);
+	}
+
+	/**
+	 * Runs the firmware planner over moves[0..length) from the power-on state.
+	 */
+	public Execution simulate(byte[] moves, int length) {
+		Execution e = new Execution();
+		for (int i=0; i<length; i++) {
+			e.execute(moves[i]);
+		}
+		return e;
+	}
+
+	double rotateTime(int rotation) {
+		return (rotation & MOVE_MAG) != 0 ? halfTurn : quarterTurn;
+	}
+
+	double heightTime(int from, int to) {
+		return Math.abs(elevatorMm[to] - elevatorMm[from]) / elevatorMmPerSec;
+	}
+
+	private static int newFrontPySy(int o, int rotation) {
+		return (((o >> 2) ^ (o >> 1)) & ~(o << 1)) ^ (o << 2) ^ o ^ (o >> 1) ^ (o >> 3) ^ rotation;
+	}
+
+	/**
+	 * Orientation after rotate(rotation, isPrimaryAxisInverted) at the given height.
+	 */
+	static int rotated(int orientation, int height, int rotation, int isPrimaryAxisInverted) {
+		if (height == HEIGHT_DEPTH4 || isPrimaryAxisInverted != 0) {
+			if ((rotation & MOVE_MAG) != 0) {
+				return orientation ^ PYSY_MASK;
+			}
+			return (orientation & UP_FACE_MASK)
+				+ (3 - ((orientation + (orientation >> FACE_BITS)) & AXIS_MASK))
+				+ (newFrontPySy(orientation, rotation >> 2) & PYSY_MASK);
+		}
+		return orientation;
+	}
+
+	/**
+	 * Orientation after flip() at the given height.
+	 */
+	static int flipped(int orientation, int height) {
+		if (height == HEIGHT_FLIP) {
+			return ((orientation & FRONT_FACE_MASK) << FACE_BITS) + (orientation >> FACE_BITS);
+		}
+		return orientation ^ PYSY_MASK;
+	}
+
+	/**
+	 * Robot state while replaying a sequence, plus what it cost so far.
+	 */
+	public class Execution {
+		public int orientation = ORIENT_UF;
+		public int height = 0;
+		public double time = 0;
+		public int rotations = 0;
+		public int flips = 0;
+		public int heightChanges = 0;
+
+		void execute(int move) {
+			int upwardFaceXorMove = orientation >> FACE_BITS ^ move;
+			if ((upwardFaceXorMove & AXIS_MASK) != 0) {
+				if (((orientation ^ move) & AXIS_MASK) != 0) {
+					executeTertiary(move);
+				} else {
+					executeSecondary(move);
+				}
+			} else {
+				executePrimary(move, upwardFaceXorMove & PYSY_MASK);
+			}
+		}
+
+		void executePrimary(int move, int isPrimaryAxisInverted) {
+			setHeight((move & MOVE_DEPTH) != 0 ? 2 : isPrimaryAxisInverted / 2 + 1);
+			rotate(move, isPrimaryAxisInverted);
+		}
+
+		void executeSecondary(int move) {
+			setHeight(HEIGHT_FLIP);
+			flip();
+			executePrimary(move, (orientation >> FACE_BITS ^ move) & PYSY_MASK);
+		}
+
+		void executeTertiary(int move) {
+			setHeight(HEIGHT_DEPTH4);
+			rotate((newFrontPySy(orientation, move) & PYSY_MASK) << 2, 0);
+			executeSecondary(move);
+		}
+
+		void rotate(int rotation, int isPrimaryAxisInverted) {
+			orientation = rotated(orientation, height, rotation, isPrimaryAxisInverted);
+			time += rotateTime(rotation);
+			rotations++;
+		}
+
+		void flip() {
+			orientation = flipped(orientation, height);
+			time += flip;
+			flips++;
+		}
+
+		void setHeight(int newHeight) {
+			if (newHeight != height) {
+				time += heightTime(height, newHeight);
+				heightChanges++;
+			}
+			height = newHeight;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%.2fs (%d rotations, %d flips, %d height changes)", time, rotations, flips, heightChanges);
+		}
+	}
+}
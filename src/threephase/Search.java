@@ -26,19 +26,17 @@ import static threephase.Center1.ctsmv;
 import static threephase.Center1.csprun;
 import static threephase.Center1.symmove;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.ObjIntConsumer;
 
 public class Search {
-	static final int PHASE1_SOLUTIONS = 10000;
-	static final int PHASE2_ATTEMPTS = 500;
-	static final int PHASE2_SOLUTIONS = 100;
-	static final int PHASE3_ATTEMPTS = 100;
+	static volatile boolean inited = false;
 
-	static boolean inited = false;
+	public SolverProfile profile = new SolverProfile();
 
-	PriorityQueue<FullCube> p1sols = new PriorityQueue<FullCube>(PHASE2_ATTEMPTS, new FullCube.ValueComparator());
-
-	static int[] count = new int[1];
+	PriorityQueue<FullCube> p1sols = new PriorityQueue<FullCube>(profile.phase2Attempts, new FullCube.ValueComparator());
 
 	int[] move1 = new int[15];
 	int[] move2 = new int[20];
@@ -61,11 +59,45 @@ public class Search {
 	String solution = "";
 
 	int p1SolsCnt = 0;
-	FullCube[] arr2 = new FullCube[PHASE2_SOLUTIONS];
+	FullCube[] arr2 = new FullCube[profile.phase2Solutions];
 	int arr2idx = 0;
 
+	volatile boolean cancelled = false;
+
 	public boolean inverse_solution = false;
 	public boolean with_rotation = true;
+	public boolean parallel_phase1 = false;
+	public boolean parallel_phase2 = false;
+	public boolean parallel_phase3 = false;
+	public boolean iterative_search = false;
+
+	/**
+	 * Phase 3 without ranking and unranking the full edge permutation at every node: the
+	 * child is looked up with Edge3.getmvrot4 and its permutation is written straight
+	 * into tempe. Visits the same nodes as the default.
+	 */
+	public boolean edge3_tables = false;
+
+	/**
+	 * When set, candidates of equal length are ranked by the estimated cost of their
+	 * move prefix, and up to cost_candidates shortest phase-3 solutions are finished
+	 * so that the cheapest complete solution can be returned.
+	 */
+	public CostModel cost_model = null;
+	public int cost_candidates = 4;
+
+	/**
+	 * When set, solution(), solve() and byteSolve() look the state up here before searching
+	 * and store what they find. The anytime and streaming solves always search.
+	 */
+	public SolutionCache cache = null;
+
+	// set while this instance runs one task of a parallel search
+	ParallelSearch.Phase1Hits p1hits = null;
+	int p1limit = 0;
+	int arr2limit = 0;
+	OrderedResults<?> cutoff = null;
+	int taskIndex = 0;
 
 	public Search() {
 		for (int i=0; i<20; i++) {
@@ -75,12 +107,25 @@ public class Search {
 		init();
 	}
 
+	public static boolean isInited() {
+		return inited;
+	}
+
+	/**
+	 * Rough progress of init, or of loading the tables, from 0 to 1. Only the Edge3
+	 * pruning table reports progress while it is built, loading jumps to 1 at the end.
+	 */
+	public static double initStatus() {
+		return inited ? 1 : Math.min(0.99, Edge3.initStatus());
+	}
+
 	public synchronized static void init() {
 		if (inited) {
 			return;
 		}
 		cs.min2phase.Search.init();
 
+		long start = System.nanoTime();
 		System.out.println("Initialize Center1 Solver...");
 
 		Center1.initSym();
@@ -103,8 +148,9 @@ public class Search {
 		Edge3.initMvrot();
 		Edge3.initRaw2Sym();
 		Edge3.createPrun();
+		Edge3.createDepth();
 
-		System.out.println("OK");
+		System.out.println(String.format("OK, tables built in %.2f s on %d threads", (System.nanoTime() - start) / 1e9, ParallelSearch.pool().getParallelism()));
 
 		inited = true;
 	}
@@ -156,123 +202,308 @@ public class Search {
 		return solution;
 	}
 
+	IterativeSearch engine = null;
+
+	// search1/2/3 nodes visited and children pruned, running totals
+	long nodes1 = 0;
+	long nodes2 = 0;
+	long nodes3 = 0;
+	long pruned1 = 0;
+	long pruned2 = 0;
+	long pruned3 = 0;
+
+	final SearchStats stats = new SearchStats();
+
 	int totlen = 0;
+	double execCost = 0;
+	long time333 = 0;
+	long time1 = 0;
+	long time2 = 0;
+	long time3 = 0;
+
+	/**
+	 * Move count of the last solution.
+	 */
+	public int getTotalLength() {
+		return totlen;
+	}
+
+	/**
+	 * Estimated execution cost of the last solution, or 0 without a cost model.
+	 */
+	public double getExecutionCost() {
+		return execCost;
+	}
+
+	/**
+	 * Counters of the last solve. The object is reused by the next solve, copy it to
+	 * keep it.
+	 */
+	public SearchStats getStats() {
+		return stats;
+	}
 
 	public Byte[] byteSolve(FullCube cube){
 		c = cube;
-		
-		solution = "";
-		int ud = new Center1(c.getCenter(), 0).getsym();
-		int fb = new Center1(c.getCenter(), 1).getsym();
-		int rl = new Center1(c.getCenter(), 2).getsym();
-		int udprun = csprun[ud >> 6];
-		int fbprun = csprun[fb >> 6];
-		int rlprun = csprun[rl >> 6];
+		return cachedSearch().getMoveBytes(inverse_solution);
+	}
 
-		p1SolsCnt = 0;
-		arr2idx = 0;
-		p1sols.clear();
+	/**
+	 * Writes the solution to out[offset..] in move2byte encoding and returns its length.
+	 * The output path does not box or allocate; out needs room for about 60 moves.
+	 */
+	public int byteSolve(FullCube cube, byte[] out, int offset) {
+		c = cube;
+		return cachedSearch().getMoveBytes(inverse_solution, out, offset);
+	}
 
-		for (length1=Math.min(Math.min(udprun, fbprun), rlprun); length1<100; length1++) {
-			if (rlprun <= length1 && search1(rl>>>6, rl&0x3f, length1, -1, 0) 
-					|| udprun <= length1 && search1(ud>>>6, ud&0x3f, length1, -1, 0)
-					|| fbprun <= length1 && search1(fb>>>6, fb&0x3f, length1, -1, 0)) {
-				break;
-			}
+	// set while streamSolve runs
+	MoveSink sink = null;
+	byte[] streamBuf = new byte[64];
+	byte[] streamTmp = new byte[64];
+	int streamed = 0;
+	long streamStart = 0;
+	long timeToFirstMove = -1;
+
+	/**
+	 * Streaming solve: passes each part of the solution to sink as soon as it can no
+	 * longer change, so that the robot can start while the later phases are running.
+	 * A prefix is sent when every candidate left for the next phase shares it, which
+	 * is checked after phase 1, phase 2 and phase 3; the rest follows after search333.
+	 * Returns the solution length. Needs inverse_solution == false.
+	 */
+	public int streamSolve(FullCube cube, MoveSink sink) {
+		if (inverse_solution) {
+			throw new IllegalStateException("an inverse solution cannot be streamed");
+		}
+		c = cube;
+		this.sink = sink;
+		streamed = 0;
+		timeToFirstMove = -1;
+		streamStart = System.nanoTime();
+		stats.reset();
+		try {
+			FullCube sol = search();
+			stream(new FullCube[] {sol}, 1);
+			return streamed;
+		} finally {
+			this.sink = null;
 		}
+	}
 
-		FullCube[] p1SolsArr = p1sols.toArray(new FullCube[0]);
-		Arrays.sort(p1SolsArr, 0, p1SolsArr.length);
+	/**
+	 * Nanoseconds from the start of the last streamSolve until its first moves were
+	 * sent, -1 if none were.
+	 */
+	public long getTimeToFirstMove() {
+		return timeToFirstMove;
+	}
 
-		int MAX_LENGTH2 = 9;
-		int length12;
-		do {
-			OUT:
-			for (length12=p1SolsArr[0].value; length12<100; length12++) {
-				for (int i=0; i<p1SolsArr.length; i++) {
-					if (p1SolsArr[i].value > length12) {
-						break;
-					}
-					if (length12 - p1SolsArr[i].length1 > MAX_LENGTH2) {
-						continue;
-					}
-					c1.copy(p1SolsArr[i]);
-					ct2.set(c1.getCenter(), c1.getEdge().getParity());
-					int s2ct = ct2.getct();
-					int s2rl = ct2.getrl();
-					length1 = p1SolsArr[i].length1;
-					length2 = length12 - p1SolsArr[i].length1;
-
-					if (search2(s2ct, s2rl, length2, 28, 0)) {
-						break OUT;
-					}
+	// sends the moves that cands[0..n) agree on and that were not sent yet
+	private void stream(FullCube[] cands, int n) {
+		if (sink == null || n == 0) {
+			return;
+		}
+		int common = cands[0].getFixedMoveBytes(streamBuf);
+		for (int i=1; i<n && common > streamed; i++) {
+			common = Math.min(common, cands[i].getFixedMoveBytes(streamTmp));
+			for (int j=streamed; j<common; j++) {
+				if (streamTmp[j] != streamBuf[j]) {
+					common = j;
+					break;
 				}
 			}
-			MAX_LENGTH2++;
-		} while (length12 == 100);
-		Arrays.sort(arr2, 0, arr2idx);
-		int length123, index = 0;
+		}
+		if (common > streamed) {
+			sink.accept(streamBuf, streamed, common - streamed);
+			if (timeToFirstMove == -1) {
+				timeToFirstMove = System.nanoTime() - streamStart;
+			}
+			streamed = common;
+		}
+	}
 
-		int MAX_LENGTH3 = 13;
-		do {
-			OUT2:
-			for (length123=arr2[0].value; length123<100; length123++) {
-				for (int i=0; i<Math.min(arr2idx, PHASE3_ATTEMPTS); i++) {
-					if (arr2[i].value > length123) {
-						break;
-					}
-					if (length123 - arr2[i].length1 - arr2[i].length2 > MAX_LENGTH3) {
-						continue;
-					}
-					int eparity = e12.set(arr2[i].getEdge());
-					ct3.set(arr2[i].getCenter(), eparity ^ arr2[i].getCorner().getParity());
-					int ct = ct3.getct();
-					int edge = e12.get(10);
-					int prun = Edge3.getprun(e12.getsym());
-					int lm = 20;
-
-					if (prun <= length123 - arr2[i].length1 - arr2[i].length2 
-							&& search3(edge, ct, prun, length123 - arr2[i].length1 - arr2[i].length2, lm, 0)) {
-	//					if (solcnt == 5) {
-							index = i;
-							break OUT2;
-	//					}
+	/**
+	 * Anytime solve: returns the shortest solution found before the budget runs out.
+	 * The first solution comes from the normal search and is always completed, however
+	 * short the budget. After that the search is repeated with more phase-1/phase-2
+	 * candidates and more 3x3 probes, and each shorter solution is passed to onImprove
+	 * together with its length. The round that is running at the deadline is abandoned.
+	 */
+	public String solve(FullCube cube, Duration budget) {
+		return solve(cube, budget, null);
+	}
+
+	public String solve(FullCube cube, Duration budget, ObjIntConsumer<String> onImprove) {
+		c = cube;
+		FullCube best = anytimeSearch(budget, onImprove == null ? null : 
+			(sol, len) -> onImprove.accept(sol.getMoveString(inverse_solution, with_rotation), len));
+		solution = best.getMoveString(inverse_solution, with_rotation);
+		return solution;
+	}
+
+	public Byte[] byteSolve(FullCube cube, Duration budget) {
+		c = cube;
+		return anytimeSearch(budget, null).getMoveBytes(inverse_solution);
+	}
+
+	private static ScheduledExecutorService timer;
+
+	static synchronized ScheduledExecutorService timer() {
+		if (timer == null) {
+			timer = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "threephase-deadline");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return timer;
+	}
+
+	FullCube anytimeSearch(Duration budget, ObjIntConsumer<FullCube> onImprove) {
+		long deadline = System.nanoTime() + budget.toNanos();
+		stats.reset();
+		FullCube best = search();
+		int bestlen = totlen;
+		double bestcost = execCost;
+		if (onImprove != null) {
+			onImprove.accept(best, bestlen);
+		}
+
+		SolverProfile base = profile;
+		profile = new SolverProfile(base);
+		final boolean[] running = {true};
+		ScheduledFuture<?> stop = timer().schedule(() -> {
+			synchronized (running) {
+				if (running[0]) {
+					cancelled = true;
+				}
+			}
+		}, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		try {
+			while (!cancelled && bestlen > 0) {
+				profile.phase1Solutions = Math.min(profile.phase1Solutions * 2, 1000000);
+				profile.phase2Solutions = Math.min(profile.phase2Solutions * 2, 10000);
+				// search333 cannot be interrupted, so only ask for more probes while that fits the budget
+				if (4 * time333 < deadline - System.nanoTime()) {
+					profile.probeMin333 = Math.min(profile.probeMin333 * 2, 100000);
+				}
+				FullCube sol = search();
+				if (sol != null && (cost_model == null ? totlen < bestlen : execCost < bestcost)) {
+					best = sol;
+					bestlen = totlen;
+					bestcost = execCost;
+					if (onImprove != null) {
+						onImprove.accept(best, bestlen);
 					}
 				}
 			}
-			MAX_LENGTH3++;
-		} while (length123 == 100);
+		} finally {
+			stop.cancel(false);
+			synchronized (running) {
+				running[0] = false;
+				cancelled = false;
+			}
+			profile = base;
+		}
+		totlen = bestlen;
+		execCost = bestcost;
+		return best;
+	}
 
-		FullCube solcube = new FullCube(arr2[index]);
-		length1 = solcube.length1;
-		length2 = solcube.length2;
-		int length = length123 - length1 - length2;
+	void doSearch() {
+		solution = cachedSearch().getMoveString(inverse_solution, with_rotation);
+	}
 
-		for (int i=0; i<length; i++) {
-			solcube.move(move3std[move3[i]]);
+	FullCube cachedSearch() {
+		stats.reset();
+		if (cache == null) {
+			return search();
 		}
-
-		String facelet = solcube.to333Facelet();
-		String sol = search333.solution(facelet, 21, 1000000, 500, 0);
-		int len333 = search333.length();
-		if (sol.startsWith("Error")) {
-			System.out.println(sol);
-			System.out.println(solcube);
-			System.out.println(facelet);
-			throw new RuntimeException();
+		FullCube sol = cache.get(c);
+		if (sol != null) {
+			stats.cached = true;
+			totlen = sol.length1;
+			execCost = 0;
+			if (cost_model != null) {
+				byte[] buf = new byte[64];
+				execCost = cost_model.cost(buf, sol.getMoveBytes(inverse_solution, buf, 0));
+			}
+			return sol;
 		}
-		int[] sol333 = tomove(sol);
-		for (int i=0; i<sol333.length; i++) {
-			solcube.move(sol333[i]);
+		sol = search();
+		if (sol != null) {
+			cache.put(c, sol);
 		}
+		return sol;
+	}
 
-		totlen = length1 + length2 + length + len333;
-
-		return solcube.getMoveBytes(inverse_solution);
+	// returns null if the search was cancelled before it found a solution, adds to stats
+	FullCube search() {
+		long n1 = nodes1, n2 = nodes2, n3 = nodes3;
+		long p1 = pruned1, p2 = pruned2, p3 = pruned3;
+		long allocated = SearchStats.allocated();
+		time333 = 0;
+		try {
+			return search0();
+		} finally {
+			stats.nodes1 += nodes1 - n1;
+			stats.nodes2 += nodes2 - n2;
+			stats.nodes3 += nodes3 - n3;
+			stats.pruned1 += pruned1 - p1;
+			stats.pruned2 += pruned2 - p2;
+			stats.pruned3 += pruned3 - p3;
+			stats.time333 += time333;
+			stats.allocatedBytes = allocated < 0 ? -1 : stats.allocatedBytes + SearchStats.allocated() - allocated;
+		}
 	}
 
-	void doSearch() {
+	private FullCube search0() {
 		solution = "";
+		FullCube[] p1SolsArr = phase1();
+		if (p1SolsArr == null || !phase2(p1SolsArr)) {
+			return null;
+		}
+		List<int[]> found3 = phase3();
+		if (found3 == null) {
+			return null;
+		}
+
+		FullCube[] sol3cubes = new FullCube[found3.size()];
+		for (int i=0; i<sol3cubes.length; i++) {
+			int[] sol3 = found3.get(i);
+			sol3cubes[i] = new FullCube(arr2[sol3[0]]);
+			for (int j=1; j<sol3.length; j++) {
+				sol3cubes[i].move(move3std[sol3[j]]);
+			}
+		}
+		stream(sol3cubes, sol3cubes.length);
+
+		FullCube best = null;
+		int bestlen = 0;
+		double bestcost = 0;
+		byte[] buf = cost_model == null ? null : new byte[64];
+		for (int i=0; i<sol3cubes.length; i++) {
+			FullCube solcube = finish(sol3cubes[i], found3.get(i).length - 1);
+			double cost = cost_model == null ? 0 : cost_model.cost(buf, solcube.getMoveBytes(inverse_solution, buf, 0));
+			if (best == null || cost < bestcost) {
+				best = solcube;
+				bestlen = totlen;
+				bestcost = cost;
+			}
+		}
+		totlen = bestlen;
+		execCost = bestcost;
+		return best;
+	}
+
+	/**
+	 * The phases of search, each returns null (false) if the search was cancelled. phase1
+	 * returns the phase 1 solutions in the order phase 2 tries them, phase2 leaves its
+	 * solutions in arr2 and phase3 returns its own as the index in arr2 followed by the
+	 * moves. The benchmarks run them one at a time.
+	 */
+	FullCube[] phase1() {
 		int ud = new Center1(c.getCenter(), 0).getsym();
 		int fb = new Center1(c.getCenter(), 1).getsym();
 		int rl = new Center1(c.getCenter(), 2).getsym();
@@ -281,90 +512,154 @@ public class Search {
 		int rlprun = csprun[rl >> 6];
 
 		p1SolsCnt = 0;
-		arr2idx = 0;
 		p1sols.clear();
 
-		for (length1=Math.min(Math.min(udprun, fbprun), rlprun); length1<100; length1++) {
-			if (rlprun <= length1 && search1(rl>>>6, rl&0x3f, length1, -1, 0) 
-					|| udprun <= length1 && search1(ud>>>6, ud&0x3f, length1, -1, 0)
-					|| fbprun <= length1 && search1(fb>>>6, fb&0x3f, length1, -1, 0)) {
-				break;
+		long start1 = System.nanoTime();
+		if (parallel_phase1) {
+			ParallelSearch.phase1(this, new int[][] {
+				{rl>>>6, rl&0x3f, rlprun}, {ud>>>6, ud&0x3f, udprun}, {fb>>>6, fb&0x3f, fbprun}});
+		} else {
+			for (length1=Math.min(Math.min(udprun, fbprun), rlprun); length1<100; length1++) {
+				if (rlprun <= length1 && dfs1(rl>>>6, rl&0x3f, length1, -1, 0) 
+						|| udprun <= length1 && dfs1(ud>>>6, ud&0x3f, length1, -1, 0)
+						|| fbprun <= length1 && dfs1(fb>>>6, fb&0x3f, length1, -1, 0)) {
+					break;
+				}
 			}
 		}
+		time1 = System.nanoTime() - start1;
+
+		if (cancelled) {
+			return null;
+		}
 
 		FullCube[] p1SolsArr = p1sols.toArray(new FullCube[0]);
+		stats.init2Hits += p1SolsCnt;
+		stats.p1Candidates += p1SolsArr.length;
+		prefixCost(p1SolsArr, p1SolsArr.length);
 		Arrays.sort(p1SolsArr, 0, p1SolsArr.length);
+		stream(p1SolsArr, p1SolsArr.length);
+		return p1SolsArr;
+	}
+
+	boolean phase2(FullCube[] p1SolsArr) {
+		arr2idx = 0;
+		arr2limit = profile.phase2Solutions;
+		if (arr2.length < arr2limit) {
+			arr2 = Arrays.copyOf(arr2, arr2limit);
+		}
 
-		int MAX_LENGTH2 = 9;
+		long start2 = System.nanoTime();
+		int MAX_LENGTH2 = profile.maxLength2;
 		int length12;
 		do {
-			OUT:
-			for (length12=p1SolsArr[0].value; length12<100; length12++) {
-				for (int i=0; i<p1SolsArr.length; i++) {
-					if (p1SolsArr[i].value > length12) {
-						break;
-					}
-					if (length12 - p1SolsArr[i].length1 > MAX_LENGTH2) {
-						continue;
-					}
-					c1.copy(p1SolsArr[i]);
-					ct2.set(c1.getCenter(), c1.getEdge().getParity());
-					int s2ct = ct2.getct();
-					int s2rl = ct2.getrl();
-					length1 = p1SolsArr[i].length1;
-					length2 = length12 - p1SolsArr[i].length1;
-
-					if (search2(s2ct, s2rl, length2, 28, 0)) {
-						break OUT;
+			if (parallel_phase2) {
+				length12 = ParallelSearch.phase2(this, p1SolsArr, MAX_LENGTH2);
+			} else {
+				OUT:
+				for (length12=p1SolsArr[0].value; length12<100; length12++) {
+					for (int i=0; i<p1SolsArr.length; i++) {
+						if (p1SolsArr[i].value > length12) {
+							break;
+						}
+						if (length12 - p1SolsArr[i].length1 > MAX_LENGTH2) {
+							continue;
+						}
+						c1.copy(p1SolsArr[i]);
+						ct2.set(c1.getCenter(), c1.getEdge().getParity());
+						int s2ct = ct2.getct();
+						int s2rl = ct2.getrl();
+						length1 = p1SolsArr[i].length1;
+						length2 = length12 - p1SolsArr[i].length1;
+
+						if (dfs2(s2ct, s2rl, length2, 28, 0)) {
+							break OUT;
+						}
 					}
 				}
 			}
 			MAX_LENGTH2++;
-		} while (length12 == 100);
+		} while (length12 == 100 && !cancelled);
+		time2 = System.nanoTime() - start2;
+		if (cancelled) {
+			return false;
+		}
+		stats.length12 = length12;
+		stats.init3Hits += arr2idx;
+		stats.arr2Candidates += Math.min(arr2idx, profile.phase3Attempts);
+		prefixCost(arr2, arr2idx);
 		Arrays.sort(arr2, 0, arr2idx);
-		int length123, index = 0;
+		stream(arr2, Math.min(arr2idx, profile.phase3Attempts));
+		return true;
+	}
+
+	List<int[]> phase3() {
+		int want = cost_model == null ? 1 : Math.max(1, cost_candidates);
+		List<int[]> found3;
 
-		int MAX_LENGTH3 = 13;
+		long start3 = System.nanoTime();
+		int MAX_LENGTH3 = profile.maxLength3;
 		do {
-			OUT2:
-			for (length123=arr2[0].value; length123<100; length123++) {
-				for (int i=0; i<Math.min(arr2idx, PHASE3_ATTEMPTS); i++) {
-					if (arr2[i].value > length123) {
-						break;
-					}
-					if (length123 - arr2[i].length1 - arr2[i].length2 > MAX_LENGTH3) {
-						continue;
+			if (parallel_phase3) {
+				found3 = ParallelSearch.phase3(this, MAX_LENGTH3, want);
+			} else {
+				found3 = new ArrayList<int[]>();
+				OUT2:
+				for (int length123=arr2[0].value; length123<100; length123++) {
+					for (int i=0; i<Math.min(arr2idx, profile.phase3Attempts); i++) {
+						if (arr2[i].value > length123) {
+							break;
+						}
+						if (length123 - arr2[i].length1 - arr2[i].length2 > MAX_LENGTH3) {
+							continue;
+						}
+						int eparity = e12.set(arr2[i].getEdge());
+						ct3.set(arr2[i].getCenter(), eparity ^ arr2[i].getCorner().getParity());
+						int ct = ct3.getct();
+						int edge = e12.get(10);
+						int prun = Edge3.getprun(e12.getsym());
+						int lm = 20;
+
+						if (prun <= length123 - arr2[i].length1 - arr2[i].length2 
+								&& dfs3(edge, ct, prun, length123 - arr2[i].length1 - arr2[i].length2, lm, 0)) {
+							int length3 = length123 - arr2[i].length1 - arr2[i].length2;
+							int[] sol3 = new int[length3 + 1];
+							sol3[0] = i;
+							System.arraycopy(move3, 0, sol3, 1, length3);
+							found3.add(sol3);
+							if (found3.size() == want) {
+								break OUT2;
+							}
+						}
 					}
-					int eparity = e12.set(arr2[i].getEdge());
-					ct3.set(arr2[i].getCenter(), eparity ^ arr2[i].getCorner().getParity());
-					int ct = ct3.getct();
-					int edge = e12.get(10);
-					int prun = Edge3.getprun(e12.getsym());
-					int lm = 20;
-
-					if (prun <= length123 - arr2[i].length1 - arr2[i].length2 
-							&& search3(edge, ct, prun, length123 - arr2[i].length1 - arr2[i].length2, lm, 0)) {
-	//					if (solcnt == 5) {
-							index = i;
-							break OUT2;
-	//					}
+					if (!found3.isEmpty()) {
+						break;
 					}
 				}
 			}
 			MAX_LENGTH3++;
-		} while (length123 == 100);
+		} while (found3.isEmpty() && !cancelled);
+		time3 = System.nanoTime() - start3;
+		if (cancelled) {
+			return null;
+		}
+		int[] sol3 = found3.get(0);
+		stats.length123 = arr2[sol3[0]].length1 + arr2[sol3[0]].length2 + sol3.length - 1;
+		return found3;
+	}
 
-		FullCube solcube = new FullCube(arr2[index]);
+	/**
+	 * Solves the remaining 3x3 of a cube after phase 3 with search333 and appends the
+	 * moves to it. Sets totlen and adds to time333.
+	 */
+	FullCube finish(FullCube solcube, int length) {
 		length1 = solcube.length1;
 		length2 = solcube.length2;
-		int length = length123 - length1 - length2;
-
-		for (int i=0; i<length; i++) {
-			solcube.move(move3std[move3[i]]);
-		}
 
 		String facelet = solcube.to333Facelet();
-		String sol = search333.solution(facelet, 21, 1000000, 500, 0);
+		long start333 = System.nanoTime();
+		String sol = search333.solution(facelet, profile.maxDepth333, Math.max(profile.probeMax333, profile.probeMin333), profile.probeMin333, 0);
+		time333 += System.nanoTime() - start333;
 		int len333 = search333.length();
 		if (sol.startsWith("Error")) {
 			System.out.println(sol);
@@ -377,9 +672,19 @@ public class Search {
 			solcube.move(sol333[i]);
 		}
 
-		solution = solcube.getMoveString(inverse_solution, with_rotation);
-
 		totlen = length1 + length2 + length + len333;
+		return solcube;
+	}
+
+	// ranks candidates of equal value by the cost of the moves they have fixed so far
+	private void prefixCost(FullCube[] cands, int n) {
+		if (cost_model == null || inverse_solution) {
+			return;
+		}
+		byte[] buf = new byte[64];
+		for (int i=0; i<n; i++) {
+			cands[i].cost = cost_model.cost(buf, cands[i].getFixedMoveBytes(buf));
+		}
 	}
 
 	public void calc(FullCube s) {
@@ -387,7 +692,34 @@ public class Search {
 		doSearch();
 	}
 
+	// search1/2/3 with either engine
+	boolean dfs1(int ct, int sym, int maxl, int lm, int depth) {
+		return iterative_search ? engine().search1(ct, sym, maxl, lm, depth) : search1(ct, sym, maxl, lm, depth);
+	}
+
+	boolean dfs2(int ct, int rl, int maxl, int lm, int depth) {
+		return iterative_search ? engine().search2(ct, rl, maxl, lm, depth) : search2(ct, rl, maxl, lm, depth);
+	}
+
+	boolean dfs3(int edge, int ct, int prun, int maxl, int lm, int depth) {
+		if (edge3_tables) {
+			tempe[depth].set(edge);
+		}
+		return iterative_search ? engine().search3(edge, ct, prun, maxl, lm, depth) : search3(edge, ct, prun, maxl, lm, depth);
+	}
+
+	private IterativeSearch engine() {
+		if (engine == null) {
+			engine = new IterativeSearch(this);
+		}
+		return engine;
+	}
+
 	boolean search1(int ct, int sym, int maxl, int lm, int depth) {
+		nodes1++;
+		if (cancelled || cutoff != null && cutoff.isCancelled(taskIndex)) {
+			return true;
+		}
 		if (ct==0 && maxl < 5) {
 			return maxl == 0 && init2(sym, lm);
 		}
@@ -397,15 +729,16 @@ public class Search {
 			}
 			for (int power=0; power<3; power++) {
 				int m = axis + power;
-				int ctx = ctsmv[ct][symmove[sym][m]];
+				int ctx = ctsmv(ct, symmove(sym, m));
 				int prun = csprun[ctx>>>6];
 				if (prun >= maxl) {
+					pruned1++;
 					if (prun > maxl) {
 						break;
 					}
 					continue;
 				}
-				int symx = symmult[sym][ctx&0x3f];
+				int symx = symmult(sym, ctx&0x3f);
 				ctx>>>=6;
 				move1[depth] = m;
 				if (search1(ctx, symx, maxl-1, axis, depth+1)) {
@@ -454,8 +787,17 @@ public class Search {
 		c1.sym = sym;
 		p1SolsCnt++;
 
+		if (p1hits != null) {
+			p1hits.add(c1, move1, length1 + (add1 ? 2 : 0));
+			return p1SolsCnt == p1limit;
+		}
+		addP1Sol();
+		return p1SolsCnt == profile.phase1Solutions;
+	}
+
+	void addP1Sol() {
 		FullCube next;
-		if (p1sols.size() < PHASE2_ATTEMPTS) {
+		if (p1sols.size() < profile.phase2Attempts) {
 			next = new FullCube(c1);
 		} else {
 			next = p1sols.poll();
@@ -464,11 +806,13 @@ public class Search {
 			}
 		}
 		p1sols.add(next);
-
-		return p1SolsCnt == PHASE1_SOLUTIONS;
 	}
 
 	boolean search2(int ct, int rl, int maxl, int lm, int depth) {
+		nodes2++;
+		if (cancelled || cutoff != null && cutoff.isCancelled(taskIndex)) {
+			return true;
+		}
 		if (ct==0 && ctprun[rl] == 0 && maxl == 0) {
 			return maxl == 0 && init3();
 		}
@@ -477,11 +821,12 @@ public class Search {
 				m = skipAxis2[m];
 				continue;
 			}
-			int ctx = ctmv[ct][m];
-			int rlx = rlmv[rl][m];
+			int ctx = ctmv(ct, m);
+			int rlx = rlmv(rl, m);
 
 			int prun = ctprun[ctx * 70 + rlx];
 			if (prun >= maxl) {
+				pruned2++;
 				if (prun > maxl) {
 					m = skipAxis2[m];
 				}
@@ -518,43 +863,61 @@ public class Search {
 		arr2[arr2idx].length2 = length2;
 		arr2idx++;
 
-		return arr2idx == arr2.length;
+		return arr2idx == arr2limit;
 	}
 
 	public boolean search3(int edge, int ct, int prun, int maxl, int lm, int depth) {
+		nodes3++;
+		if (cancelled || cutoff != null && cutoff.isCancelled(taskIndex)) {
+			return false;
+		}
 		if (maxl == 0) {
-			return edge == 0 && ct == 0;
+			// with edge3_tables the children are not ranked (edge is 0), prun is 0 only when solved
+			return edge == 0 && prun == 0 && ct == 0;
 		}
-		tempe[depth].set(edge);
+		if (!edge3_tables) {
+			tempe[depth].set(edge);
+		}
+		int[] ep = tempe[depth].edge;
 		for (int m=0; m<17; m++) {
 			if (ckmv3[lm][m]) {
 				m = skipAxis3[m];
 				continue;
 			}
-			int ctx = Center3.ctmove[ct][m];
+			int ctx = Center3.ctmove(ct, m);
 			int prun1 = Center3.prun[ctx];
 			if (prun1 >= maxl) {
+				pruned3++;
 				if (prun1 > maxl && m < 14) {
 					m = skipAxis3[m];
 				}
 				continue;
 			}
-			int edgex = Edge3.getmvrot(tempe[depth].edge, m<<3, 10);
-
-			int cord1x = edgex / Edge3.N_RAW;
+			int edgex = 0;
+			int cord1x;
+			if (edge3_tables) {
+				cord1x = Edge3.getmvrot4(ep, m<<3);
+			} else {
+				edgex = Edge3.getmvrot(ep, m<<3, 10);
+				cord1x = edgex / Edge3.N_RAW;
+			}
 			int symcord1x = Edge3.raw2sym[cord1x];
 			int symx = symcord1x & 0x7;
 			symcord1x >>= 3;
-			int cord2x = Edge3.getmvrot(tempe[depth].edge, m<<3|symx, 10) % Edge3.N_RAW;
+			int cord2x = Edge3.getmvrot(ep, m<<3|symx, 10) % Edge3.N_RAW;
 
 			int prunx = Edge3.getprun(symcord1x * Edge3.N_RAW + cord2x, prun);
 			if (prunx >= maxl) {
+				pruned3++;
 				if (prunx > maxl && m < 14) {
 					m = skipAxis3[m];
 				}
 				continue;
 			}
 
+			if (edge3_tables && maxl > 1) {
+				Edge3.mvrot(ep, m<<3, tempe[depth + 1].edge);
+			}
 			if (search3(edgex, ctx, prunx, maxl - 1, m, depth + 1)) {
 				move3[depth] = m;
 				return true;
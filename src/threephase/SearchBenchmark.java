@@ -0,0 +1,93 @@
+package threephase;
+
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * Compares the recursive search1/2/3 with the explicit stack engine (IterativeSearch),
+ * each with and without edge3_tables, on a seeded corpus of random states. All of them
+ * visit the same nodes, so the solutions are checked to be identical, and the time spent
+ * outside search333 is turned into nodes per second, phase 3 is also reported on its
+ * own. The configurations alternate between rounds so that JIT and thermal effects hit
+ * them alike.
+ *
+ * With "prun" as the 4th argument the Edge3 pruning table is also rebuilt and timed, and
+ * checked against the loaded one.
+ *
+ * usage: SearchBenchmark [states=20] [rounds=3] [seed=42] [prun]
+ */
+public class SearchBenchmark {
+
+	public static void main(String[] args) {
+		int n_states = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int n_rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+		boolean prun = args.length > 3 && args[3].equals("prun");
+
+		test.initTables();
+
+		if (prun) {
+			IntBuffer loaded = Edge3.eprun;
+			long start = System.nanoTime();
+			Edge3.createPrun();
+			System.out.println(String.format("Edge3.createPrun %.2f s", (System.nanoTime() - start) / 1e9));
+			if (!loaded.equals(Edge3.eprun)) {
+				throw new RuntimeException("rebuilt Edge3 pruning table differs from the loaded one");
+			}
+		}
+
+		Random r = new Random(seed);
+		FullCube[] corpus = new FullCube[n_states];
+		for (int i=0; i<n_states; i++) {
+			corpus[i] = new FullCube(r);
+		}
+
+		String[] names = {"recursive", "iterative", "recursive+tables", "iterative+tables"};
+		int n_configs = names.length;
+
+		Search search = new Search();
+		String[] expected = new String[n_states];
+		for (int config=0; config<n_configs; config++) {
+			configure(search, config);
+			for (int i=0; i<Math.min(5, n_states); i++) {
+				search.solve(new FullCube(corpus[i]));
+			}
+		}
+
+		long[][] nodes = new long[n_configs][3];
+		long[] nanos = new long[n_configs];
+		long[] nanos3 = new long[n_configs];
+		for (int round=0; round<n_rounds; round++) {
+			for (int config=0; config<n_configs; config++) {
+				configure(search, config);
+				for (int i=0; i<n_states; i++) {
+					search.nodes1 = search.nodes2 = search.nodes3 = 0;
+					long start = System.nanoTime();
+					String sol = search.solve(new FullCube(corpus[i]));
+					nanos[config] += System.nanoTime() - start - search.time333;
+					nanos3[config] += search.time3;
+					nodes[config][0] += search.nodes1;
+					nodes[config][1] += search.nodes2;
+					nodes[config][2] += search.nodes3;
+					if (expected[i] == null) {
+						expected[i] = sol;
+					} else if (!expected[i].equals(sol)) {
+						throw new RuntimeException("configurations disagree on state " + i + ":\n" + expected[i] + "\n" + sol);
+					}
+				}
+			}
+		}
+
+		for (int config=0; config<n_configs; config++) {
+			long total = nodes[config][0] + nodes[config][1] + nodes[config][2];
+			System.out.println(String.format("%-17s %10.0f nodes/s\t%10.0f phase 3 nodes/s\t%8.2f ms/solve\tnodes %d/%d/%d", names[config],
+				total / (nanos[config] / 1e9), nodes[config][2] / (nanos3[config] / 1e9), nanos[config] / 1e6 / n_states / n_rounds,
+				nodes[config][0], nodes[config][1], nodes[config][2]));
+		}
+	}
+
+	private static void configure(Search search, int config) {
+		search.iterative_search = (config & 1) != 0;
+		search.edge3_tables = (config & 2) != 0;
+	}
+}
@@ -0,0 +1,112 @@
+package threephase;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * What the last solve of a Search did, see Search.getStats().
+ *
+ * nodes1, nodes2, nodes3		nodes expanded by search1/2/3, pool workers included
+ * pruned1, pruned2, pruned3	children cut by the pruning tables (one per cut, an axis
+ *								skipped at once counts once)
+ * init2Hits, init3Hits		phase-1 and phase-2 solutions found
+ * p1Candidates			phase-1 solutions kept for phase 2 (at most phase2Attempts)
+ * arr2Candidates			phase-2 solutions tried in phase 3 (at most phase3Attempts)
+ * length12, length123		the phase 1+2 and phase 1+2+3 length bounds the search ended at
+ * time333				nanoseconds spent in search333
+ * allocatedBytes			bytes allocated by the solving thread, -1 if the JVM cannot
+ *							tell; allocations of pool workers are not included
+ *
+ * The counters are plain fields of the Search and are only summed up once per phase,
+ * so they stay on. An anytime solve adds up all of its rounds, its bounds are those of
+ * the last round. A solve served from the cache leaves everything at 0 except cached.
+ */
+public class SearchStats {
+
+	public long nodes1;
+	public long nodes2;
+	public long nodes3;
+	public long pruned1;
+	public long pruned2;
+	public long pruned3;
+	public long init2Hits;
+	public long init3Hits;
+	public long p1Candidates;
+	public long arr2Candidates;
+	public int length12;
+	public int length123;
+	public long time333;
+	public long allocatedBytes;
+	public boolean cached;
+
+	private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+	private static com.sun.management.ThreadMXBean threads() {
+		try {
+			java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+			if (bean instanceof com.sun.management.ThreadMXBean) {
+				com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+				if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+					return threads;
+				}
+			}
+		} catch (LinkageError | RuntimeException e) {
+		}
+		return null;
+	}
+
+	// bytes allocated by the current thread so far, -1 if unknown
+	static long allocated() {
+		return THREADS == null ? -1 : THREADS.getCurrentThreadAllocatedBytes();
+	}
+
+	public SearchStats() {
+	}
+
+	public SearchStats(SearchStats s) {
+		copy(s);
+	}
+
+	public void copy(SearchStats s) {
+		nodes1 = s.nodes1;
+		nodes2 = s.nodes2;
+		nodes3 = s.nodes3;
+		pruned1 = s.pruned1;
+		pruned2 = s.pruned2;
+		pruned3 = s.pruned3;
+		init2Hits = s.init2Hits;
+		init3Hits = s.init3Hits;
+		p1Candidates = s.p1Candidates;
+		arr2Candidates = s.arr2Candidates;
+		length12 = s.length12;
+		length123 = s.length123;
+		time333 = s.time333;
+		allocatedBytes = s.allocatedBytes;
+		cached = s.cached;
+	}
+
+	public void reset() {
+		nodes1 = nodes2 = nodes3 = 0;
+		pruned1 = pruned2 = pruned3 = 0;
+		init2Hits = init3Hits = 0;
+		p1Candidates = arr2Candidates = 0;
+		length12 = length123 = 0;
+		time333 = 0;
+		allocatedBytes = 0;
+		cached = false;
+	}
+
+	public long nodes() {
+		return nodes1 + nodes2 + nodes3;
+	}
+
+	@Override
+	public String toString() {
+		return "nodes=" + nodes1 + "/" + nodes2 + "/" + nodes3
+			+ ",pruned=" + pruned1 + "/" + pruned2 + "/" + pruned3
+			+ ",init2Hits=" + init2Hits + ",init3Hits=" + init3Hits
+			+ ",p1Candidates=" + p1Candidates + ",arr2Candidates=" + arr2Candidates
+			+ ",length12=" + length12 + ",length123=" + length123
+			+ String.format(",time333=%.2fms", time333 / 1e6)
+			+ ",allocatedBytes=" + allocatedBytes + (cached ? ",cached" : "");
+	}
+}
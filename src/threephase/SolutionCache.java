@@ -0,0 +1,227 @@
+package threephase;
+
+import java.util.*;
+
+/**
+ * Bounded LRU cache of solutions, shared safely between Search instances.
+ *
+ * A state is stored under its canonical form: the smallest facelet array among its 48
+ * symmetric images (rotations and mirrors, with the colors relabeled to match). A state
+ * that is a rotation or reflection of a cached one is therefore a hit as well; the
+ * cached moves are conjugated back with Center1.symmove.
+ *
+ * The cache does not look at how a solution was found, so share one only between
+ * Search instances with the same profile.
+ */
+public class SolutionCache {
+
+	// facelet permutation and color relabeling of each symmetry, and its index in Center1
+	private static final int[][] symFacelet = new int[48][96];
+	private static final int[][] symColor = new int[48][6];
+	private static final int[] symIndex = new int[48];
+	private static boolean symInited = false;
+
+	private final int capacity;
+	private final LinkedHashMap<Key, byte[]> map;
+	private long hits = 0;
+	private long misses = 0;
+
+	public SolutionCache(int capacity) {
+		this.capacity = capacity;
+		map = new LinkedHashMap<Key, byte[]>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, byte[]> eldest) {
+				return size() > SolutionCache.this.capacity;
+			}
+		};
+		initSym();
+	}
+
+	/**
+	 * A solved copy of cube whose moves (all of them counted in length1) come from the
+	 * cache, or null on a miss.
+	 */
+	FullCube get(FullCube cube) {
+		byte[] f = cube.getFacelet();
+		int[] sym = new int[1];
+		Key key = canonical(f, sym);
+		byte[] moves;
+		synchronized (this) {
+			moves = map.get(key);
+			if (moves == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		int conj = Center1.syminv[symIndex[sym[0]]];
+		FullCube sol = new FullCube(f);
+		for (int i=0; i<moves.length; i++) {
+			sol.move(Center1.symmove(conj, moves[i]));
+		}
+		sol.length1 = moves.length;
+		return sol;
+	}
+
+	void put(FullCube cube, FullCube solution) {
+		int[] sym = new int[1];
+		Key key = canonical(cube.getFacelet(), sym);
+		byte[] buf = new byte[64];
+		byte[] moves = Arrays.copyOf(buf, solution.getFixedMoves(buf));
+		int conj = symIndex[sym[0]];
+		for (int i=0; i<moves.length; i++) {
+			moves[i] = (byte) Center1.symmove(conj, moves[i]);
+		}
+		synchronized (this) {
+			map.put(key, moves);
+		}
+	}
+
+	public synchronized int size() {
+		return map.size();
+	}
+
+	public synchronized long hits() {
+		return hits;
+	}
+
+	public synchronized long misses() {
+		return misses;
+	}
+
+	public synchronized void clear() {
+		map.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	// the smallest symmetric image of f, sym[0] is set to the symmetry that produced it
+	private static Key canonical(byte[] f, int[] sym) {
+		byte[] best = null;
+		byte[] cur = new byte[96];
+		for (int s=0; s<48; s++) {
+			int[] perm = symFacelet[s];
+			int[] color = symColor[s];
+			for (int i=0; i<96; i++) {
+				cur[perm[i]] = (byte) color[f[i]];
+			}
+			if (best == null || compare(cur, best) < 0) {
+				if (best == null) {
+					best = new byte[96];
+				}
+				System.arraycopy(cur, 0, best, 0, 96);
+				sym[0] = s;
+			}
+		}
+		return new Key(best);
+	}
+
+	private static int compare(byte[] a, byte[] b) {
+		for (int i=0; i<a.length; i++) {
+			if (a[i] != b[i]) {
+				return a[i] - b[i];
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * Facelet coordinates in half sticker units: x to R, y to U, z to F. Stickers are at
+	 * -3, -1, 1, 3 and the face planes at +-4. The symmetries are the 48 signed
+	 * permutation matrices.
+	 */
+	private static final int[][] faceNormal = {{0, 1, 0}, {1, 0, 0}, {0, 0, 1}, {0, -1, 0}, {-1, 0, 0}, {0, 0, -1}};
+
+	private static int[] facelet2pos(int idx) {
+		int r = idx % 16 / 4;
+		int c = idx % 4;
+		switch (idx / 16) {
+		case 0: return new int[] {-3 + 2 * c, 4, -3 + 2 * r};
+		case 1: return new int[] {4, 3 - 2 * r, 3 - 2 * c};
+		case 2: return new int[] {-3 + 2 * c, 3 - 2 * r, 4};
+		case 3: return new int[] {-3 + 2 * c, -4, 3 - 2 * r};
+		case 4: return new int[] {-4, 3 - 2 * r, -3 + 2 * c};
+		default: return new int[] {3 - 2 * c, 3 - 2 * r, -4};
+		}
+	}
+
+	private static int[] apply(int[] axis, int[] sign, int[] p) {
+		return new int[] {sign[0] * p[axis[0]], sign[1] * p[axis[1]], sign[2] * p[axis[2]]};
+	}
+
+	private static synchronized void initSym() {
+		if (symInited) {
+			return;
+		}
+		HashMap<String, Integer> pos2facelet = new HashMap<String, Integer>();
+		for (int i=0; i<96; i++) {
+			pos2facelet.put(Arrays.toString(facelet2pos(i)), i);
+		}
+		int[][] axes = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+		int s = 0;
+		for (int[] axis : axes) {
+			for (int signs=0; signs<8; signs++, s++) {
+				int[] sign = {1 - (signs & 1) * 2, 1 - (signs >> 1 & 1) * 2, 1 - (signs >> 2 & 1) * 2};
+				for (int i=0; i<96; i++) {
+					symFacelet[s][i] = pos2facelet.get(Arrays.toString(apply(axis, sign, facelet2pos(i))));
+				}
+				for (int i=0; i<6; i++) {
+					symColor[s][i] = faceOf(apply(axis, sign, faceNormal[i]));
+				}
+
+				// a turn of face i becomes a turn of face symColor[i], reversed by a mirror
+				int[] ex = apply(axis, sign, new int[] {1, 0, 0});
+				int[] ey = apply(axis, sign, new int[] {0, 1, 0});
+				int[] ez = apply(axis, sign, new int[] {0, 0, 1});
+				boolean mirror = ex[0] * (ey[1] * ez[2] - ey[2] * ez[1])
+						- ex[1] * (ey[0] * ez[2] - ey[2] * ez[0])
+						+ ex[2] * (ey[0] * ez[1] - ey[1] * ez[0]) < 0;
+				int[] mv = new int[36];
+				for (int m=0; m<36; m++) {
+					int pow = m % 3;
+					mv[m] = m / 18 * 18 + symColor[s][m / 3 % 6] * 3 + (mirror ? 2 - pow : pow);
+				}
+				symIndex[s] = -1;
+				for (int j=0; j<48; j++) {
+					if (Arrays.equals(Center1.symmove, j * 36, j * 36 + 36, mv, 0, 36)) {
+						symIndex[s] = j;
+						break;
+					}
+				}
+				if (symIndex[s] == -1) {
+					throw new RuntimeException("no Center1 symmetry for " + Arrays.toString(axis) + " " + Arrays.toString(sign));
+				}
+			}
+		}
+		symInited = true;
+	}
+
+	private static int faceOf(int[] n) {
+		for (int i=0; i<6; i++) {
+			if (Arrays.equals(faceNormal[i], n)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static final class Key {
+		final byte[] f;
+		final int hash;
+
+		Key(byte[] f) {
+			this.f = f;
+			hash = Arrays.hashCode(f);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && Arrays.equals(f, ((Key) obj).f);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+}
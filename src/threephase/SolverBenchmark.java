@@ -0,0 +1,508 @@
+package threephase;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Benchmark runner for accepting or rejecting solver changes. It solves versioned state
+ * corpora after a warmup and reports, per corpus, latency percentiles of every phase,
+ * and the distributions of the move count and of the robot execution time
+ * (RobotCostModel, whether or not the search uses it). A run can be written as JSON and
+ * compared with a stored baseline run, regressions are listed and make the exit status 1.
+ *
+ * A corpus file holds one state per line as 96 facelets (URFDLB), after # header lines
+ * with its name and version. The corpora in corpus/ are made by the corpus command:
+ *   random-state  200 uniformly random states
+ *   random-move   200 states scrambled by 5 to 30 random moves
+ *   worst-case    the 50 states of 500 random ones on which the search visits the most nodes
+ * Change the version when a corpus changes, runs of different versions are not compared.
+ *
+ * usage:
+ *   SolverBenchmark corpus <dir>
+ *   SolverBenchmark run <corpus file>... [-warmup 20] [-profile <SolverProfile>] [-cost]
+ *       [-json <out>] [-baseline <json>] [-latency 10] [-moves 0.5] [-robot 0.5]
+ * -cost searches with RobotCostModel, -latency, -moves and -robot are the tolerated
+ * increase in percent before a latency percentile, the mean move count or the mean
+ * robot time counts as a regression.
+ */
+public class SolverBenchmark {
+
+	static final int FORMAT = 1;
+
+	static final String[] PHASES = {"total", "phase1", "phase2", "phase3", "search333"};
+	static final double[] PERCENTILES = {50, 90, 99};
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("usage: SolverBenchmark corpus <dir> | run <corpus file>... [options], see the class comment");
+			System.exit(2);
+		}
+		if (args[0].equals("corpus")) {
+			writeCorpora(new File(args[1]));
+			return;
+		}
+
+		List<String> files = new ArrayList<String>();
+		Map<String, String> opts = new HashMap<String, String>();
+		for (int i=1; i<args.length; i++) {
+			if (!args[i].startsWith("-")) {
+				files.add(args[i]);
+			} else if (args[i].equals("-cost")) {
+				opts.put("cost", "true");
+			} else {
+				opts.put(args[i].substring(1), args[++i]);
+			}
+		}
+
+		test.initTables();
+		Search search = new Search();
+		if (opts.containsKey("profile")) {
+			search.profile = SolverProfile.parse(opts.get("profile"));
+		}
+		if (opts.containsKey("cost")) {
+			search.cost_model = new RobotCostModel();
+		}
+
+		List<Corpus> corpora = new ArrayList<Corpus>();
+		for (String file: files) {
+			corpora.add(Corpus.read(new File(file)));
+		}
+		int warmup = Integer.parseInt(opts.getOrDefault("warmup", "20"));
+		Random r = new Random(7);
+		for (int i=0; i<warmup; i++) {
+			search.solve(new FullCube(r));
+		}
+
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"format\": ").append(FORMAT);
+		json.append(",\n  \"profile\": \"").append(search.profile).append('"');
+		json.append(",\n  \"cost_model\": ").append(search.cost_model != null);
+		json.append(",\n  \"warmup\": ").append(warmup);
+		json.append(",\n  \"corpora\": {");
+		for (int c=0; c<corpora.size(); c++) {
+			Corpus corpus = corpora.get(c);
+			Run run = new Run(corpus.states.size());
+			for (String state: corpus.states) {
+				run.solve(search, state);
+			}
+			run.print(corpus.id());
+			json.append(c == 0 ? "\n" : ",\n").append("    \"").append(corpus.id()).append("\": ");
+			run.json(json);
+		}
+		json.append("\n  }\n}\n");
+
+		if (opts.containsKey("json")) {
+			Files.write(Paths.get(opts.get("json")), json.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		if (opts.containsKey("baseline")) {
+			Object baseline = Json.parse(new String(Files.readAllBytes(Paths.get(opts.get("baseline"))), StandardCharsets.UTF_8));
+			List<String> regressions = compare(baseline, Json.parse(json.toString()),
+				Double.parseDouble(opts.getOrDefault("latency", "10")),
+				Double.parseDouble(opts.getOrDefault("moves", "0.5")),
+				Double.parseDouble(opts.getOrDefault("robot", "0.5")));
+			for (String regression: regressions) {
+				System.out.println("REGRESSION " + regression);
+			}
+			System.out.println(regressions.isEmpty() ? "no regressions against " + opts.get("baseline") : regressions.size() + " regressions");
+			if (!regressions.isEmpty()) {
+				System.exit(1);
+			}
+		}
+	}
+
+	static class Corpus {
+		String name;
+		int version;
+		List<String> states = new ArrayList<String>();
+
+		String id() {
+			return name + "-v" + version;
+		}
+
+		static Corpus read(File file) throws IOException {
+			Corpus corpus = new Corpus();
+			for (String line: Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+				line = line.trim();
+				if (line.startsWith("# name ")) {
+					corpus.name = line.substring(7).trim();
+				} else if (line.startsWith("# version ")) {
+					corpus.version = Integer.parseInt(line.substring(10).trim());
+				} else if (!line.isEmpty() && !line.startsWith("#")) {
+					if (line.length() != 96) {
+						throw new IOException(file + ": not a 96 facelet state: " + line);
+					}
+					corpus.states.add(line);
+				}
+			}
+			if (corpus.name == null || corpus.version == 0) {
+				throw new IOException(file + " has no name or version header");
+			}
+			return corpus;
+		}
+
+		void write(File file, String comment) throws IOException {
+			StringBuilder sb = new StringBuilder();
+			sb.append("# ARCS4 solver benchmark corpus, see threephase.SolverBenchmark\n");
+			sb.append("# name ").append(name).append('\n');
+			sb.append("# version ").append(version).append('\n');
+			sb.append("# ").append(comment).append('\n');
+			for (String state: states) {
+				sb.append(state).append('\n');
+			}
+			Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	static String facelets(FullCube cube) {
+		byte[] f = cube.getFacelet();
+		char[] str = new char[f.length];
+		for (int i=0; i<f.length; i++) {
+			str[i] = "URFDLB".charAt(f[i]);
+		}
+		return new String(str);
+	}
+
+	static void writeCorpora(File dir) throws IOException {
+		dir.mkdirs();
+		Corpus states = new Corpus();
+		states.name = "random-state";
+		states.version = 1;
+		Random r = new Random(42);
+		for (int i=0; i<200; i++) {
+			states.states.add(facelets(new FullCube(r)));
+		}
+		states.write(new File(dir, "random-state.txt"), "200 random states, new FullCube(new Random(42))");
+
+		Corpus moves = new Corpus();
+		moves.name = "random-move";
+		moves.version = 1;
+		r = new Random(43);
+		for (int i=0; i<200; i++) {
+			FullCube cube = new FullCube();
+			for (int n=5+r.nextInt(26); n>0; n--) {
+				cube.doMove(r.nextInt(36));
+			}
+			moves.states.add(facelets(cube));
+		}
+		moves.write(new File(dir, "random-move.txt"), "200 scrambles of 5 to 30 random moves, Random(43)");
+
+		test.initTables();
+		Search search = new Search();
+		r = new Random(44);
+		String[] sample = new String[500];
+		long[] nodes = new long[sample.length];
+		Integer[] order = new Integer[sample.length];
+		for (int i=0; i<sample.length; i++) {
+			FullCube cube = new FullCube(r);
+			sample[i] = facelets(cube);
+			search.nodes1 = search.nodes2 = search.nodes3 = 0;
+			search.solve(cube);
+			nodes[i] = search.nodes1 + search.nodes2 + search.nodes3;
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(nodes[b], nodes[a]));
+		Corpus worst = new Corpus();
+		worst.name = "worst-case";
+		worst.version = 1;
+		for (int i=0; i<50; i++) {
+			worst.states.add(sample[order[i]]);
+		}
+		worst.write(new File(dir, "worst-case.txt"), "the 50 of 500 random states, Random(44), with the most search nodes, most first");
+	}
+
+	// the measurements of one corpus
+	static class Run {
+		int n = 0;
+		long[][] nanos;
+		int[] moves;
+		double[] robot;
+		RobotCostModel robotModel = new RobotCostModel();
+		byte[] buf = new byte[64];
+
+		Run(int size) {
+			nanos = new long[PHASES.length][size];
+			moves = new int[size];
+			robot = new double[size];
+		}
+
+		void solve(Search search, String facelets) {
+			FullCube cube = new FullCube(toFacelet(facelets));
+			long start = System.nanoTime();
+			int len = search.byteSolve(cube, buf, 0);
+			nanos[0][n] = System.nanoTime() - start;
+			nanos[1][n] = search.time1;
+			nanos[2][n] = search.time2;
+			nanos[3][n] = search.time3;
+			nanos[4][n] = search.time333;
+			moves[n] = search.getTotalLength();
+			robot[n] = robotModel.cost(buf, len);
+			n++;
+		}
+
+		void print(String id) {
+			System.out.println(String.format("%s, %d states", id, n));
+			for (int p=0; p<PHASES.length; p++) {
+				double[] ms = millis(nanos[p]);
+				System.out.println(String.format("  %-10s p50 %8.2f  p90 %8.2f  p99 %8.2f  max %8.2f ms", PHASES[p],
+					percentile(ms, 50), percentile(ms, 90), percentile(ms, 99), ms[ms.length - 1]));
+			}
+			double[] mv = sorted(moves);
+			System.out.println(String.format("  moves      mean %6.2f  p50 %4.0f  p90 %4.0f  max %4.0f  %s", mean(mv),
+				percentile(mv, 50), percentile(mv, 90), mv[mv.length - 1], histogram(mv, 1)));
+			double[] rb = robot.clone();
+			Arrays.sort(rb);
+			System.out.println(String.format("  robot      mean %6.2f  p50 %6.2f  p90 %6.2f  max %6.2f s  %s", mean(rb),
+				percentile(rb, 50), percentile(rb, 90), rb[rb.length - 1], histogram(rb, 5)));
+		}
+
+		void json(StringBuilder sb) {
+			sb.append("{\n      \"states\": ").append(n);
+			sb.append(",\n      \"latency_ms\": {");
+			for (int p=0; p<PHASES.length; p++) {
+				sb.append(p == 0 ? "\n" : ",\n").append("        \"").append(PHASES[p]).append("\": ");
+				distribution(sb, millis(nanos[p]));
+			}
+			sb.append("\n      },\n      \"moves\": ");
+			distribution(sb, sorted(moves));
+			sb.append(",\n      \"moves_histogram\": ").append(histogram(sorted(moves), 1));
+			double[] rb = robot.clone();
+			Arrays.sort(rb);
+			sb.append(",\n      \"robot_s\": ");
+			distribution(sb, rb);
+			sb.append(",\n      \"robot_histogram\": ").append(histogram(rb, 5));
+			sb.append("\n    }");
+		}
+	}
+
+	static byte[] toFacelet(String facelets) {
+		byte[] f = new byte[96];
+		for (int i=0; i<96; i++) {
+			f[i] = (byte) "URFDLB".indexOf(facelets.charAt(i));
+		}
+		return f;
+	}
+
+	static double[] millis(long[] nanos) {
+		double[] ms = new double[nanos.length];
+		for (int i=0; i<ms.length; i++) {
+			ms[i] = nanos[i] / 1e6;
+		}
+		Arrays.sort(ms);
+		return ms;
+	}
+
+	static double[] sorted(int[] values) {
+		double[] d = new double[values.length];
+		for (int i=0; i<d.length; i++) {
+			d[i] = values[i];
+		}
+		Arrays.sort(d);
+		return d;
+	}
+
+	// nearest rank of sorted values
+	static double percentile(double[] sorted, double p) {
+		int rank = (int) Math.ceil(p / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	static double mean(double[] values) {
+		double sum = 0;
+		for (double v: values) {
+			sum += v;
+		}
+		return sum / values.length;
+	}
+
+	static void distribution(StringBuilder sb, double[] sorted) {
+		sb.append(String.format(Locale.ROOT, "{\"mean\": %.4f", mean(sorted)));
+		for (double p: PERCENTILES) {
+			sb.append(String.format(Locale.ROOT, ", \"p%.0f\": %.4f", p, percentile(sorted, p)));
+		}
+		sb.append(String.format(Locale.ROOT, ", \"max\": %.4f}", sorted[sorted.length - 1]));
+	}
+
+	// counts per bucket of width, as a JSON object keyed by the bucket start
+	static String histogram(double[] sorted, double width) {
+		StringBuilder sb = new StringBuilder("{");
+		for (int i=0; i<sorted.length; ) {
+			long bucket = (long) Math.floor(sorted[i] / width);
+			int count = 0;
+			while (i < sorted.length && (long) Math.floor(sorted[i] / width) == bucket) {
+				count++;
+				i++;
+			}
+			sb.append(sb.length() == 1 ? "" : ", ").append('"').append((long) (bucket * width)).append("\": ").append(count);
+		}
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Regressions of run against baseline, for the corpora both of them have: latency
+	 * percentiles (not max, which is too noisy) above the tolerance, and mean move count
+	 * or robot time above theirs, in percent.
+	 */
+	@SuppressWarnings("unchecked")
+	static List<String> compare(Object baseline, Object run, double latency, double moves, double robot) {
+		List<String> regressions = new ArrayList<String>();
+		for (String key: new String[] {"profile", "cost_model"}) {
+			Object b = ((Map<String, Object>) baseline).get(key);
+			Object c = ((Map<String, Object>) run).get(key);
+			if (!Objects.equals(b, c)) {
+				System.out.println("note: the baseline ran with " + key + " " + b + ", this run with " + c);
+			}
+		}
+		Map<String, Object> base = (Map<String, Object>) ((Map<String, Object>) baseline).get("corpora");
+		Map<String, Object> cur = (Map<String, Object>) ((Map<String, Object>) run).get("corpora");
+		for (String id: cur.keySet()) {
+			if (!base.containsKey(id)) {
+				System.out.println("baseline has no " + id + ", not compared");
+				continue;
+			}
+			Map<String, Object> b = (Map<String, Object>) base.get(id);
+			Map<String, Object> c = (Map<String, Object>) cur.get(id);
+			Map<String, Object> bl = (Map<String, Object>) b.get("latency_ms");
+			Map<String, Object> cl = (Map<String, Object>) c.get("latency_ms");
+			for (String phase: PHASES) {
+				for (double p: PERCENTILES) {
+					String key = String.format("p%.0f", p);
+					check(regressions, id + " " + phase + " " + key + " ms", get(bl, phase, key), get(cl, phase, key), latency);
+				}
+			}
+			check(regressions, id + " mean moves", get(b, "moves", "mean"), get(c, "moves", "mean"), moves);
+			check(regressions, id + " mean robot s", get(b, "robot_s", "mean"), get(c, "robot_s", "mean"), robot);
+		}
+		return regressions;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static double get(Map<String, Object> map, String key, String stat) {
+		return (Double) ((Map<String, Object>) map.get(key)).get(stat);
+	}
+
+	private static void check(List<String> regressions, String what, double base, double cur, double tolerance) {
+		if (cur > base * (1 + tolerance / 100) && cur - base > 1e-9) {
+			regressions.add(String.format(Locale.ROOT, "%s: %.4f -> %.4f (%+.1f%%, tolerance %.1f%%)", what, base, cur,
+				base == 0 ? 100.0 : (cur / base - 1) * 100, tolerance));
+		}
+	}
+
+	// just enough JSON for the files written above: objects, arrays, strings, numbers, booleans
+	static class Json {
+		private final String s;
+		private int i = 0;
+
+		private Json(String s) {
+			this.s = s;
+		}
+
+		static Object parse(String s) {
+			Json json = new Json(s);
+			Object value = json.value();
+			json.skip();
+			if (json.i != s.length()) {
+				throw json.error();
+			}
+			return value;
+		}
+
+		private void skip() {
+			while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+				i++;
+			}
+		}
+
+		private IllegalArgumentException error() {
+			return new IllegalArgumentException("bad JSON at " + i);
+		}
+
+		private Object value() {
+			skip();
+			if (i >= s.length()) {
+				throw error();
+			}
+			char c = s.charAt(i);
+			if (c == '{') {
+				Map<String, Object> map = new LinkedHashMap<String, Object>();
+				i++;
+				skip();
+				if (s.charAt(i) == '}') {
+					i++;
+					return map;
+				}
+				while (true) {
+					skip();
+					String key = string();
+					skip();
+					expect(':');
+					map.put(key, value());
+					skip();
+					if (s.charAt(i++) == '}') {
+						return map;
+					}
+					if (s.charAt(i - 1) != ',') {
+						throw error();
+					}
+				}
+			}
+			if (c == '[') {
+				List<Object> list = new ArrayList<Object>();
+				i++;
+				skip();
+				if (s.charAt(i) == ']') {
+					i++;
+					return list;
+				}
+				while (true) {
+					list.add(value());
+					skip();
+					if (s.charAt(i++) == ']') {
+						return list;
+					}
+					if (s.charAt(i - 1) != ',') {
+						throw error();
+					}
+				}
+			}
+			if (c == '"') {
+				return string();
+			}
+			if (s.startsWith("true", i) || s.startsWith("false", i)) {
+				boolean b = s.startsWith("true", i);
+				i += b ? 4 : 5;
+				return b;
+			}
+			int start = i;
+			while (i < s.length() && "+-.eE0123456789".indexOf(s.charAt(i)) >= 0) {
+				i++;
+			}
+			if (start == i) {
+				throw error();
+			}
+			return Double.parseDouble(s.substring(start, i));
+		}
+
+		private String string() {
+			expect('"');
+			StringBuilder sb = new StringBuilder();
+			while (s.charAt(i) != '"') {
+				char c = s.charAt(i++);
+				if (c == '\\') {
+					c = s.charAt(i++);
+				}
+				sb.append(c);
+			}
+			i++;
+			return sb.toString();
+		}
+
+		private void expect(char c) {
+			if (i >= s.length() || s.charAt(i) != c) {
+				throw error();
+			}
+			i++;
+		}
+	}
+}
@@ -0,0 +1,420 @@
+package threephase;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A resident solver: the tables are loaded once, then solve requests are served from
+ * stdin or from any number of local TCP connections, so that several robot controllers
+ * and tools share one warm solver. A request is one line,
+ *
+ *   <id> facelet [deadline=<ms>] <96 facelets, as Search.solution takes them>
+ *   <id> packed [deadline=<ms>] <72 hex digits, see pack>
+ *   <id> scramble [deadline=<ms>] <moves, as Search.solve(String) takes them>
+ *   <id> cancel
+ *
+ * and is answered by one line when it is done, in the order the requests finish:
+ *
+ *   <id> ok <length> <solution>
+ *   <id> busy				every solver and queue slot is taken, nothing was done
+ *   <id> timeout			the deadline passed before a solution was found
+ *   <id> cancelled
+ *   <id> error <message>
+ *
+ * Ids are chosen by the client, per connection. cancel stops the request with that id
+ * and is only answered when there is none, a request that finishes anyway is answered ok.
+ *
+ * At most solvers requests run at a time, each on a Search borrowed from a SolverPool,
+ * and at most queue more wait for one; a request beyond that is answered busy right away.
+ * Deadlines and cancel set Search.cancelled, which search1/2/3 check at every node, so a
+ * request stops within a node of the phase it is in. The final search333 call cannot be
+ * stopped, a deadline that passes during it is overrun by that much.
+ *
+ * Every request runs on its own thread: a virtual thread when the JDK has them (21+), a
+ * platform thread from a cached pool otherwise, which the queue limit keeps small.
+ */
+public class SolverDaemon {
+
+	private final SolverPool pool;
+	private final Semaphore admitted;
+	private final long defaultDeadline;
+	private final ExecutorService threads = threads();
+
+	/**
+	 * deadline is the one of requests that do not set their own, in ms, 0 for none.
+	 * The tables have to be loaded.
+	 */
+	public SolverDaemon(int solvers, int queue, long deadline) {
+		pool = new SolverPool(solvers);
+		admitted = new Semaphore(solvers + queue);
+		defaultDeadline = deadline;
+	}
+
+	/**
+	 * usage: SolverDaemon [port=-] [solvers=cores] [queue=4*solvers] [deadline ms=0] [tables dir=.]
+	 * With port "-" the requests come from stdin and are answered on stdout until stdin
+	 * ends (logging goes to stderr), else connections are accepted on localhost:port.
+	 */
+	public static void main(String[] args) throws IOException {
+		String port = args.length > 0 ? args[0] : "-";
+		int solvers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int queue = args.length > 2 ? Integer.parseInt(args[2]) : 4 * solvers;
+		long deadline = args.length > 3 ? Long.parseLong(args[3]) : 0;
+		File dir = new File(args.length > 4 ? args[4] : ".");
+
+		PrintStream stdout = System.out;
+		System.setOut(System.err);
+		loadTables(dir);
+		SolverDaemon daemon = new SolverDaemon(solvers, queue, deadline);
+		System.err.println("solver ready, " + solvers + " solvers, queue " + queue);
+		if (port.equals("-")) {
+			daemon.serve(System.in, stdout);
+		} else {
+			daemon.listen(Integer.parseInt(port));
+		}
+	}
+
+	// twophase.data and threephase.tables from dir, generated and saved there if missing
+	static void loadTables(File dir) throws IOException {
+		File twophase = new File(dir, "twophase.data");
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(twophase)))) {
+			cs.min2phase.Tools.initFrom(in);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(twophase)))) {
+				cs.min2phase.Tools.saveTo(out);
+			}
+		}
+		File tables = new File(dir, "threephase.tables");
+		try {
+			TableFile.load(tables);
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			TableFile.save(tables);
+		}
+	}
+
+	public void listen(int port) throws IOException {
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			System.err.println("listening on " + server.getLocalSocketAddress());
+			while (true) {
+				Socket socket = server.accept();
+				threads.execute(() -> {
+					try (Socket s = socket) {
+						serve(s.getInputStream(), s.getOutputStream());
+					} catch (IOException e) {
+						System.err.println(socket.getRemoteSocketAddress() + ": " + e.getMessage());
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Answers the requests read from in on out, returns once in has ended and every
+	 * request has been answered. If out fails, the requests still running are cancelled.
+	 */
+	public void serve(InputStream in, OutputStream out) throws IOException {
+		new Connection(out).serve(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+	}
+
+	// a virtual thread per task where there are virtual threads, found by reflection since the build targets 17
+	private static ExecutorService threads() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(r -> {
+				Thread t = new Thread(r, "solver request");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	private final class Connection {
+		private final Writer out;
+		private final ConcurrentHashMap<String, Request> pending = new ConcurrentHashMap<String, Request>();
+		private volatile boolean broken = false;
+
+		Connection(OutputStream out) {
+			this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		}
+
+		void serve(BufferedReader in) throws IOException {
+			String line;
+			while (!broken && (line = in.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty()) {
+					handle(line);
+				}
+			}
+			synchronized (this) {
+				while (!pending.isEmpty()) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+				}
+			}
+		}
+
+		void handle(String line) {
+			String[] tok = line.split("\\s+", 3);
+			String id = tok[0];
+			if (tok.length < 2) {
+				answer(id, "error missing request type");
+				return;
+			}
+			if (tok[1].equals("cancel")) {
+				Request r = pending.get(id);
+				if (r == null) {
+					answer(id, "error no such request");
+				} else {
+					r.stop("cancelled");
+				}
+				return;
+			}
+			String state = tok.length > 2 ? tok[2] : "";
+			long deadline = defaultDeadline;
+			FullCube cube;
+			try {
+				if (state.startsWith("deadline=")) {
+					String[] d = state.split("\\s+", 2);
+					deadline = Long.parseLong(d[0].substring(9));
+					state = d.length > 1 ? d[1] : "";
+				}
+				cube = parse(tok[1], state);
+			} catch (IllegalArgumentException e) {
+				answer(id, "error " + e.getMessage());
+				return;
+			}
+			Request r = new Request(this, id, cube);
+			if (pending.putIfAbsent(id, r) != null) {
+				answer(id, "error duplicate id");
+				return;
+			}
+			if (!admitted.tryAcquire()) {
+				pending.remove(id);
+				answer(id, "busy");
+				return;
+			}
+			if (deadline > 0) {
+				r.timeout = Search.timer().schedule(() -> r.stop("timeout"), deadline, TimeUnit.MILLISECONDS);
+			}
+			threads.execute(r);
+		}
+
+		synchronized void finish(Request r, String answer) {
+			pending.remove(r.id);
+			answer(r.id, answer);
+			notifyAll();
+		}
+
+		void answer(String id, String answer) {
+			synchronized (out) {
+				try {
+					out.write(id + " " + answer + "\n");
+					out.flush();
+				} catch (IOException e) {
+					// the client is gone, nobody waits for the rest
+					broken = true;
+					for (Request r: pending.values()) {
+						r.stop("cancelled");
+					}
+				}
+			}
+		}
+	}
+
+	private final class Request implements Runnable {
+		final Connection conn;
+		final String id;
+		final FullCube cube;
+		volatile ScheduledFuture<?> timeout = null;
+
+		// guarded by this: why the request was stopped, and what to stop
+		private String stopped = null;
+		private Thread waiting = null;
+		private Search search = null;
+
+		Request(Connection conn, String id, FullCube cube) {
+			this.conn = conn;
+			this.id = id;
+			this.cube = cube;
+		}
+
+		synchronized void stop(String why) {
+			if (stopped != null) {
+				return;
+			}
+			stopped = why;
+			if (search != null) {
+				search.cancelled = true;
+			} else if (waiting != null) {
+				waiting.interrupt();
+			}
+		}
+
+		@Override
+		public void run() {
+			String answer;
+			try {
+				answer = solve();
+			} catch (RuntimeException e) {
+				answer = "error " + e;
+			} finally {
+				ScheduledFuture<?> t = timeout;
+				if (t != null) {
+					t.cancel(false);
+				}
+				admitted.release();
+			}
+			conn.finish(this, answer);
+		}
+
+		private String solve() {
+			synchronized (this) {
+				if (stopped != null) {
+					return stopped;
+				}
+				waiting = Thread.currentThread();
+			}
+			Search s = null;
+			try {
+				s = pool.take();
+			} catch (InterruptedException e) {
+			}
+			synchronized (this) {
+				waiting = null;
+				Thread.interrupted();
+				if (stopped != null || s == null) {
+					if (s != null) {
+						pool.release(s);
+					}
+					return stopped != null ? stopped : "cancelled";
+				}
+				search = s;
+			}
+			try {
+				s.c = cube;
+				FullCube sol = s.cachedSearch();
+				if (sol == null) {
+					synchronized (this) {
+						return stopped != null ? stopped : "cancelled";
+					}
+				}
+				return "ok " + s.getTotalLength() + " " + sol.getMoveString(s.inverse_solution, s.with_rotation).trim();
+			} finally {
+				synchronized (this) {
+					search = null;
+				}
+				pool.release(s);
+			}
+		}
+	}
+
+	/**
+	 * The cube of a request, throws IllegalArgumentException if the state is not one.
+	 */
+	static FullCube parse(String type, String state) {
+		state = state.trim();
+		switch (type) {
+		case "facelet":
+			if (state.length() != 96) {
+				throw new IllegalArgumentException("a facelet state has 96 facelets");
+			}
+			byte[] f = new byte[96];
+			for (int i=0; i<96; i++) {
+				f[i] = (byte) "URFDLB".indexOf(state.charAt(i));
+			}
+			return facelets(f);
+		case "packed":
+			return facelets(unpack(state));
+		case "scramble":
+			for (int i=0; i<state.length(); i++) {
+				if ("URFDLBurfdlb2'w \t".indexOf(state.charAt(i)) < 0) {
+					throw new IllegalArgumentException("bad move character '" + state.charAt(i) + "'");
+				}
+			}
+			return new FullCube(Util.tomove(state));
+		default:
+			throw new IllegalArgumentException("unknown request " + type);
+		}
+	}
+
+	// a cube from facelet colors 0..5, checked to be a state the solver can reach
+	private static FullCube facelets(byte[] f) {
+		int[] count = new int[6];
+		for (int i=0; i<96; i++) {
+			if (f[i] < 0 || f[i] > 5) {
+				throw new IllegalArgumentException("bad facelet at " + i);
+			}
+			count[f[i]]++;
+		}
+		for (int i=0; i<6; i++) {
+			if (count[i] != 16) {
+				throw new IllegalArgumentException("color " + "URFDLB".charAt(i) + " appears " + count[i] + " times");
+			}
+		}
+		FullCube cube;
+		try {
+			cube = new FullCube(f);
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("not a cube");
+		}
+		// unmatched edges and corners do not come back the same
+		if (!Arrays.equals(cube.getFacelet(), f)) {
+			throw new IllegalArgumentException("not a cube");
+		}
+		int twist = 0;
+		for (int i=0; i<8; i++) {
+			twist += cube.getCorner().co[i];
+		}
+		if (twist % 3 != 0) {
+			throw new IllegalArgumentException("twisted corner");
+		}
+		return cube;
+	}
+
+	/**
+	 * The packed form of a state: its 96 facelet colors, URFDLB as 0..5, 3 bits each and
+	 * the first facelet in the highest bits, as 36 bytes in 72 hex digits.
+	 */
+	public static String pack(FullCube cube) {
+		byte[] f = cube.getFacelet();
+		StringBuilder sb = new StringBuilder(72);
+		for (int i=0; i<96; i+=8) {
+			int bits = 0;
+			for (int j=0; j<8; j++) {
+				bits = bits << 3 | f[i + j];
+			}
+			sb.append(String.format("%06x", bits));
+		}
+		return sb.toString();
+	}
+
+	static byte[] unpack(String hex) {
+		if (hex.length() != 72) {
+			throw new IllegalArgumentException("a packed state has 72 hex digits");
+		}
+		byte[] f = new byte[96];
+		for (int i=0; i<12; i++) {
+			int bits;
+			try {
+				bits = Integer.parseInt(hex.substring(i * 6, i * 6 + 6), 16);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("bad hex digit");
+			}
+			for (int j=7; j>=0; j--) {
+				f[i * 8 + j] = (byte) (bits & 7);
+				bits >>= 3;
+			}
+		}
+		return f;
+	}
+}
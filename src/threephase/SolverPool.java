@@ -0,0 +1,134 @@
+package threephase;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A fixed set of Search instances that can be shared by any number of threads.
+ * The solver tables are static and read-only once Search.init() (or Tools.initFrom())
+ * has returned, so the only per-solve state is the scratch held by each Search.
+ * Every call borrows one instance, solves a private copy of the cube and returns it.
+ */
+public class SolverPool {
+
+	private final BlockingQueue<Search> idle;
+	private final int size;
+
+	public SolverPool() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public SolverPool(int size) {
+		this(size, false, true);
+	}
+
+	public SolverPool(int size, SolverProfile profile) {
+		this(size, false, true, profile);
+	}
+
+	public SolverPool(int size, boolean inverse_solution, boolean with_rotation) {
+		this(size, inverse_solution, with_rotation, SolverProfile.defaults());
+	}
+
+	public SolverPool(int size, boolean inverse_solution, boolean with_rotation, SolverProfile profile) {
+		if (size < 1) {
+			throw new IllegalArgumentException("pool size must be positive");
+		}
+		Search.init();
+		this.size = size;
+		idle = new ArrayBlockingQueue<Search>(size);
+		for (int i=0; i<size; i++) {
+			Search s = new Search();
+			s.inverse_solution = inverse_solution;
+			s.with_rotation = with_rotation;
+			s.profile = new SolverProfile(profile);
+			idle.add(s);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public String solve(FullCube cube) {
+		Search s = acquire();
+		try {
+			return s.solve(new FullCube(cube));
+		} finally {
+			idle.add(s);
+		}
+	}
+
+	public String solution(String facelet) {
+		Search s = acquire();
+		try {
+			return s.solution(facelet);
+		} finally {
+			idle.add(s);
+		}
+	}
+
+	public Byte[] byteSolve(FullCube cube) {
+		Search s = acquire();
+		try {
+			return s.byteSolve(new FullCube(cube));
+		} finally {
+			idle.add(s);
+		}
+	}
+
+	public int byteSolve(FullCube cube, byte[] out, int offset) {
+		Search s = acquire();
+		try {
+			return s.byteSolve(new FullCube(cube), out, offset);
+		} finally {
+			idle.add(s);
+		}
+	}
+
+	/**
+	 * Solves every cube on its own thread, at most size() at a time.
+	 * The results are in the same order as the input.
+	 */
+	public String[] solveAll(FullCube[] cubes) throws InterruptedException {
+		ExecutorService exec = Executors.newFixedThreadPool(size);
+		try {
+			List<Future<String>> futures = new ArrayList<Future<String>>(cubes.length);
+			for (FullCube cube: cubes) {
+				futures.add(exec.submit(() -> solve(cube)));
+			}
+			String[] ret = new String[cubes.length];
+			for (int i=0; i<cubes.length; i++) {
+				try {
+					ret[i] = futures.get(i).get();
+				} catch (ExecutionException e) {
+					throw new RuntimeException(e.getCause());
+				}
+			}
+			return ret;
+		} finally {
+			exec.shutdownNow();
+		}
+	}
+
+	/**
+	 * Borrows an instance for a caller that runs it itself, hand it back with release.
+	 */
+	Search take() throws InterruptedException {
+		return idle.take();
+	}
+
+	void release(Search s) {
+		s.cancelled = false;
+		idle.add(s);
+	}
+
+	private Search acquire() {
+		try {
+			return idle.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for a solver", e);
+		}
+	}
+}
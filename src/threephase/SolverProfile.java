@@ -0,0 +1,107 @@
+package threephase;
+
+/**
+ * The search limits used by one Search instance.
+ *
+ * phase1Solutions	init2 hits collected before phase 1 stops
+ * phase2Attempts	best phase-1 candidates kept for phase 2
+ * phase2Solutions	init3 hits collected before phase 2 stops
+ * phase3Attempts	best phase-2 candidates tried in phase 3
+ * maxLength2		starting cap on the phase-2 length, raised by one whenever nothing is found
+ * maxLength3		starting cap on the phase-3 length, raised the same way
+ * maxDepth333, probeMax333, probeMin333	arguments of the final min2phase solution() call
+ *
+ * Profiles print as "key=value,key=value,..." and parse() accepts the same form, so the
+ * output of Tuner can be pasted straight into a configuration. The built-in fastest()
+ * and shortest() profiles are only starting points; rerun Tuner on the target machine.
+ */
+public class SolverProfile {
+
+	public int phase1Solutions = 10000;
+	public int phase2Attempts = 500;
+	public int phase2Solutions = 100;
+	public int phase3Attempts = 100;
+	public int maxLength2 = 9;
+	public int maxLength3 = 13;
+	public int maxDepth333 = 21;
+	public long probeMax333 = 1000000;
+	public long probeMin333 = 500;
+
+	public SolverProfile() {
+	}
+
+	public SolverProfile(SolverProfile p) {
+		phase1Solutions = p.phase1Solutions;
+		phase2Attempts = p.phase2Attempts;
+		phase2Solutions = p.phase2Solutions;
+		phase3Attempts = p.phase3Attempts;
+		maxLength2 = p.maxLength2;
+		maxLength3 = p.maxLength3;
+		maxDepth333 = p.maxDepth333;
+		probeMax333 = p.probeMax333;
+		probeMin333 = p.probeMin333;
+	}
+
+	// the limits the solver has always used
+	public static SolverProfile defaults() {
+		return new SolverProfile();
+	}
+
+	public static SolverProfile fastest() {
+		return parse("phase1Solutions=1000,phase2Attempts=100,phase2Solutions=20,phase3Attempts=20,probeMin333=50");
+	}
+
+	public static SolverProfile balanced() {
+		return defaults();
+	}
+
+	public static SolverProfile shortest() {
+		return parse("phase1Solutions=50000,phase2Attempts=1000,phase2Solutions=500,phase3Attempts=200,probeMin333=5000");
+	}
+
+	/**
+	 * Reads a profile written by toString(). Keys that are left out keep their defaults.
+	 */
+	public static SolverProfile parse(String str) {
+		SolverProfile p = new SolverProfile();
+		for (String kv: str.split(",")) {
+			kv = kv.trim();
+			if (kv.isEmpty()) {
+				continue;
+			}
+			int eq = kv.indexOf('=');
+			if (eq < 0) {
+				throw new IllegalArgumentException("expected key=value: " + kv);
+			}
+			String key = kv.substring(0, eq).trim();
+			long val = Long.parseLong(kv.substring(eq + 1).trim());
+			switch (key) {
+			case "phase1Solutions":	p.phase1Solutions = (int) val;	break;
+			case "phase2Attempts":	p.phase2Attempts = (int) val;	break;
+			case "phase2Solutions":	p.phase2Solutions = (int) val;	break;
+			case "phase3Attempts":	p.phase3Attempts = (int) val;	break;
+			case "maxLength2":		p.maxLength2 = (int) val;		break;
+			case "maxLength3":		p.maxLength3 = (int) val;		break;
+			case "maxDepth333":		p.maxDepth333 = (int) val;		break;
+			case "probeMax333":		p.probeMax333 = val;			break;
+			case "probeMin333":		p.probeMin333 = val;			break;
+			default:
+				throw new IllegalArgumentException("unknown profile key: " + key);
+			}
+		}
+		return p;
+	}
+
+	@Override
+	public String toString() {
+		return "phase1Solutions=" + phase1Solutions
+			+ ",phase2Attempts=" + phase2Attempts
+			+ ",phase2Solutions=" + phase2Solutions
+			+ ",phase3Attempts=" + phase3Attempts
+			+ ",maxLength2=" + maxLength2
+			+ ",maxLength3=" + maxLength3
+			+ ",maxDepth333=" + maxDepth333
+			+ ",probeMax333=" + probeMax333
+			+ ",probeMin333=" + probeMin333;
+	}
+}
@@ -0,0 +1,249 @@
+package threephase;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Every threephase table in one file, so that loading computes nothing. The large tables
+ * (Center1.ctsmv, Edge3.eprun and Edge3.edepth) are mapped rather than read: the solver
+ * uses them straight from the mapping, and solver processes on one host share the same
+ * page cache copy. The small ones (center symmetries, move and pruning tables, the Edge3
+ * move and symmetry tables) are one more section, copied to the heap.
+ *
+ * Layout, little endian:
+ *   "ARCS4TBL", int version, int fingerprint, int section count
+ *   per section: int id, int crc32, long offset, long length in bytes
+ *   the sections, each starting at a multiple of 4096
+ *
+ * load throws an IOException when the file is missing, truncated, corrupt (crc32), or
+ * was written by another format version or for other tables (fingerprint, which covers
+ * Edge3.fullDepth). The caller is expected to fall back to generating the tables and
+ * save a new file.
+ *
+ * A build can generate a table file and bundle it in the jar (gradle jar -PbundleTables,
+ * which runs main), install copies it out of the jar so that it can be mapped.
+ */
+public final class TableFile {
+
+	static final int VERSION = 2;
+
+	private static final byte[] MAGIC = {'A', 'R', 'C', 'S', '4', 'T', 'B', 'L'};
+	private static final int ALIGN = 4096;
+
+	private static final int CTSMV = 0;
+	private static final int EPRUN = 1;
+	private static final int EDEPTH = 2;
+	private static final int SMALL = 3;
+	private static final long[] LENGTH = {15582*36*4, Edge3.N_EPRUN / 16 * 4, Edge3.N_EPRUN / 8 * 4, bytes(smallTables())};
+
+	private TableFile() {
+	}
+
+	/**
+	 * Generates the tables and writes threephase.tables, and twophase.data for min2phase,
+	 * to a directory.
+	 *
+	 * usage: TableFile [dir=.] [full]
+	 * where full sets Edge3.fullDepth, which has to match the solver's setting
+	 */
+	public static void main(String[] args) throws IOException {
+		File dir = new File(args.length > 0 ? args[0] : ".");
+		Edge3.fullDepth = args.length > 1 && args[1].equals("full");
+		dir.mkdirs();
+		save(new File(dir, "threephase.tables"));
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(dir, "twophase.data"))))) {
+			cs.min2phase.Tools.saveTo(out);
+		}
+	}
+
+	// changes whenever the shape or the meaning of a table does
+	static int fingerprint() {
+		return Arrays.hashCode(new long[] {LENGTH[CTSMV], LENGTH[SMALL], Edge3.N_SYM, Edge3.N_RAW, Edge3.MAX_DEPTH, Edge3.fullDepth ? 1 : 0});
+	}
+
+	// the tables that are copied to the heap, in file order
+	private static Object[] smallTables() {
+		return new Object[] {
+			Center1.sym2raw, Center1.csprun, Center1.symmult, Center1.symmove, Center1.syminv, Center1.finish,
+			Center2.rlmv, Center2.ctmv, Center2.rlrot, Center2.ctrot, Center2.ctprun,
+			Center3.ctmove, Center3.prun, Center3.std2rl,
+			Edge3.sym2raw, Edge3.symstate, Edge3.raw2sym, Edge3.mvrot, Edge3.mvroto, Edge3.rank4};
+	}
+
+	private static long bytes(Object table) {
+		if (table instanceof Object[]) {
+			long n = 0;
+			for (Object t: (Object[]) table) {
+				n += bytes(t);
+			}
+			return n;
+		}
+		if (table instanceof int[]) {
+			return ((int[]) table).length * 4L;
+		}
+		if (table instanceof char[]) {
+			return ((char[]) table).length * 2L;
+		}
+		return ((byte[]) table).length;
+	}
+
+	// copies table to buf, or buf to table
+	private static void copy(Object table, ByteBuffer buf, boolean save) {
+		if (table instanceof Object[]) {
+			for (Object t: (Object[]) table) {
+				copy(t, buf, save);
+			}
+		} else if (table instanceof int[]) {
+			IntBuffer ints = buf.asIntBuffer();
+			if (save) {
+				ints.put((int[]) table);
+			} else {
+				ints.get((int[]) table);
+			}
+			buf.position(buf.position() + ints.position() * 4);
+		} else if (table instanceof char[]) {
+			CharBuffer chars = buf.asCharBuffer();
+			if (save) {
+				chars.put((char[]) table);
+			} else {
+				chars.get((char[]) table);
+			}
+			buf.position(buf.position() + chars.position() * 2);
+		} else if (save) {
+			buf.put((byte[]) table);
+		} else {
+			buf.get((byte[]) table);
+		}
+	}
+
+	public static void load(File file) throws IOException {
+		synchronized (Search.class) {
+			if (Search.inited) {
+				return;
+			}
+			ByteBuffer[] sections = new ByteBuffer[LENGTH.length];
+			try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				long size = ch.size();
+				int headLength = 20 + LENGTH.length * 24;
+				if (size < headLength) {
+					throw new IOException(file + " is truncated");
+				}
+				ByteBuffer head = ch.map(MapMode.READ_ONLY, 0, headLength).order(ByteOrder.LITTLE_ENDIAN);
+				byte[] magic = new byte[MAGIC.length];
+				head.get(magic);
+				if (!Arrays.equals(magic, MAGIC)) {
+					throw new IOException(file + " is not a table file");
+				}
+				int version = head.getInt();
+				int fingerprint = head.getInt();
+				if (version != VERSION) {
+					throw new IOException(file + " is stale (version " + version + ", expected " + VERSION + ")");
+				}
+				if (fingerprint != fingerprint()) {
+					throw new IOException(file + " is stale (written for other tables or another Edge3.fullDepth)");
+				}
+				if (head.getInt() != LENGTH.length) {
+					throw new IOException(file + " has a bad header");
+				}
+				for (int i=0; i<LENGTH.length; i++) {
+					int id = head.getInt();
+					int crc = head.getInt();
+					long offset = head.getLong();
+					long length = head.getLong();
+					if (id < 0 || id >= LENGTH.length || sections[id] != null || length != LENGTH[id]) {
+						throw new IOException(file + " has a bad section " + id);
+					}
+					if (offset + length > size) {
+						throw new IOException(file + " is truncated");
+					}
+					MappedByteBuffer data = ch.map(MapMode.READ_ONLY, offset, length);
+					if (crc32(data) != crc) {
+						throw new IOException(file + " is corrupt (section " + id + ")");
+					}
+					sections[id] = data.order(ByteOrder.LITTLE_ENDIAN);
+				}
+			} catch (NoSuchFileException e) {
+				throw new FileNotFoundException(file + " does not exist");
+			}
+			// a mapping stays valid after its channel is closed
+			copy(smallTables(), sections[SMALL], false);
+			Center1.ctsmv = sections[CTSMV].asIntBuffer();
+			Center1.raw2sym = null;
+			Edge3.eprun = sections[EPRUN].asIntBuffer();
+			Edge3.edepth = sections[EDEPTH].asIntBuffer();
+			Search.inited = true;
+		}
+	}
+
+	/**
+	 * Copies the table file bundled as a classpath resource to file, if there is one, and
+	 * tells whether there was.
+	 */
+	public static boolean install(String resource, File file) throws IOException {
+		try (InputStream in = TableFile.class.getResourceAsStream(resource)) {
+			if (in == null) {
+				return false;
+			}
+			Path tmp = Paths.get(file.getPath() + ".tmp");
+			Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		}
+	}
+
+	/**
+	 * Initializes the tables if needed and writes them to file. The file is written under
+	 * another name and then moved, so a concurrent load never sees it half written.
+	 */
+	public static void save(File file) throws IOException {
+		Search.init();
+		ByteBuffer[] sections = new ByteBuffer[LENGTH.length];
+		IntBuffer[] large = {Center1.ctsmv, Edge3.eprun, Edge3.edepth};
+		for (int id=0; id<LENGTH.length; id++) {
+			sections[id] = ByteBuffer.allocate((int) LENGTH[id]).order(ByteOrder.LITTLE_ENDIAN);
+			if (id == SMALL) {
+				copy(smallTables(), sections[id], true);
+			} else {
+				IntBuffer src = large[id].duplicate();
+				src.clear();
+				sections[id].asIntBuffer().put(src);
+			}
+		}
+		Path tmp = Paths.get(file.getPath() + ".tmp");
+		try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ByteBuffer head = ByteBuffer.allocate(ALIGN).order(ByteOrder.LITTLE_ENDIAN);
+			head.put(MAGIC).putInt(VERSION).putInt(fingerprint()).putInt(sections.length);
+			long offset = ALIGN;
+			for (int id=0; id<sections.length; id++) {
+				ByteBuffer data = sections[id];
+				head.putInt(id).putInt(crc32(data)).putLong(offset).putLong(data.capacity());
+				write(ch, data, offset);
+				offset += (data.capacity() + ALIGN - 1) / ALIGN * ALIGN;
+			}
+			head.clear();
+			write(ch, head, 0);
+			ch.force(true);
+		}
+		Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static int crc32(ByteBuffer data) {
+		CRC32 crc = new CRC32();
+		ByteBuffer all = data.duplicate();
+		all.clear();
+		crc.update(all);
+		return (int) crc.getValue();
+	}
+
+	private static void write(FileChannel ch, ByteBuffer data, long offset) throws IOException {
+		data.rewind();
+		while (data.hasRemaining()) {
+			offset += ch.write(data, offset);
+		}
+	}
+}
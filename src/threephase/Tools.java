@@ -1,6 +1,7 @@
 package threephase;
 
 import java.io.*;
+import java.nio.IntBuffer;
 import java.util.Random;
 
 public class Tools {
@@ -11,26 +12,16 @@ public class Tools {
 		}
 	}
 
-	private static void write(int[] arr, DataOutput out) throws IOException {
-		for (int i=0, len=arr.length; i<len; i++) {
-			out.writeInt(arr[i]);
-		}
-	}
-
-	private static void read(int[][] arr, DataInput in) throws IOException {
-		for (int i=0, leng=arr.length; i<leng; i++) {
-			for (int j=0, len=arr[i].length; j<len; j++) {
-				arr[i][j] = in.readInt();
-			}
-		}	
+	private static IntBuffer read(int length, DataInput in) throws IOException {
+		int[] arr = new int[length];
+		read(arr, in);
+		return IntBuffer.wrap(arr);
 	}
 
-	private static void write(int[][] arr, DataOutput out) throws IOException {
-		for (int i=0, leng=arr.length; i<leng; i++) {
-			for (int j=0, len=arr[i].length; j<len; j++) {
-				out.writeInt(arr[i][j]);
-			}
-		}	
+	private static void write(IntBuffer buf, DataOutput out) throws IOException {
+		for (int i=0, len=buf.limit(); i<len; i++) {
+			out.writeInt(buf.get(i));
+		}
 	}
 
 	static Random r = new Random();
@@ -50,16 +41,28 @@ public class Tools {
 		return sb.toString();
 	}
 
-	public synchronized static void initFrom(DataInput in) throws IOException {
-		if (Search.inited) {
-			return;
+	// locks on Search.class like Search.init(), so loading and generating can never interleave
+	public static void initFrom(DataInput in) throws IOException {
+		synchronized (Search.class) {
+			if (Search.inited) {
+				return;
+			}
+			IntBuffer ctsmv = read(Center1.ctsmv.capacity(), in);
+			IntBuffer eprun = read(Edge3.eprun.capacity(), in);
+			init(ctsmv, eprun, null);
 		}
+	}
 
+	/**
+	 * Computes the small tables and installs the given ones, edepth is computed if it is
+	 * null. Call with the Search.class lock held.
+	 */
+	static void init(IntBuffer ctsmv, IntBuffer eprun, IntBuffer edepth) {
 		System.out.println("Initialize Center1 Solver...");
 
 		Center1.initSym();
 		Center1.initSym2Raw();
-		read(Center1.ctsmv, in);
+		Center1.ctsmv = ctsmv;
 		Center1.createPrun();
 
 		System.out.println("Initialize Center2 Solver...");
@@ -74,17 +77,20 @@ public class Tools {
 
 		Edge3.initMvrot();
 		Edge3.initRaw2Sym();
-		read(Edge3.eprun, in);
+		Edge3.eprun = eprun;
+		if (edepth == null) {
+			Edge3.createDepth();
+		} else {
+			Edge3.edepth = edepth;
+		}
 
-		System.out.println("OK");		
+		System.out.println("OK");
 
 		Search.inited = true;
 	}
 
-	public synchronized static void saveTo(DataOutput out) throws IOException {
-		if (!Search.inited) {
-			Search.init();
-		}
+	public static void saveTo(DataOutput out) throws IOException {
+		Search.init();
 		write(Center1.ctsmv, out);
 		write(Edge3.eprun, out);
 	}
@@ -0,0 +1,134 @@
+package threephase;
+
+import java.util.*;
+
+/**
+ * Sweeps the SolverProfile knobs over a seeded corpus of random states and prints the
+ * latency/length Pareto frontier, followed by "fastest", "balanced" and "shortest"
+ * profiles picked from it. Tables are loaded the same way as in test.
+ *
+ * usage: Tuner [states=20] [configs=40] [seed=42]
+ */
+public class Tuner {
+
+	static final int[] PHASE1_SOLUTIONS = {1000, 3000, 10000, 30000};
+	static final int[] PHASE2_ATTEMPTS = {100, 250, 500, 1000};
+	static final int[] PHASE2_SOLUTIONS = {20, 50, 100, 300};
+	static final int[] PHASE3_ATTEMPTS = {20, 50, 100, 200};
+	static final int[] MAX_LENGTH2 = {8, 9, 10};
+	static final int[] MAX_LENGTH3 = {12, 13, 14};
+	static final long[] PROBE_MIN_333 = {50, 500, 2000, 8000};
+
+	static class Result {
+		SolverProfile profile;
+		double millis;
+		double length;
+
+		Result(SolverProfile profile, double millis, double length) {
+			this.profile = profile;
+			this.millis = millis;
+			this.length = length;
+		}
+
+		boolean dominates(Result r) {
+			return millis <= r.millis && length <= r.length && (millis < r.millis || length < r.length);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%8.2f ms\t%6.3f moves\t%s", millis, length, profile);
+		}
+	}
+
+	public static void main(String[] args) {
+		int n_states = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int n_configs = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+
+		test.initTables();
+
+		Random r = new Random(seed);
+		FullCube[] corpus = new FullCube[n_states];
+		for (int i=0; i<n_states; i++) {
+			corpus[i] = new FullCube(r);
+		}
+
+		Search search = new Search();
+		// warm up the JIT before the first measured profile
+		for (int i=0; i<Math.min(5, n_states); i++) {
+			search.solve(new FullCube(corpus[i]));
+		}
+
+		ArrayList<SolverProfile> profiles = new ArrayList<SolverProfile>();
+		profiles.add(SolverProfile.defaults());
+		profiles.add(SolverProfile.fastest());
+		profiles.add(SolverProfile.shortest());
+		Random pick = new Random(seed);
+		for (int i=0; i<n_configs; i++) {
+			SolverProfile p = new SolverProfile();
+			p.phase1Solutions = PHASE1_SOLUTIONS[pick.nextInt(PHASE1_SOLUTIONS.length)];
+			p.phase2Attempts = PHASE2_ATTEMPTS[pick.nextInt(PHASE2_ATTEMPTS.length)];
+			p.phase2Solutions = PHASE2_SOLUTIONS[pick.nextInt(PHASE2_SOLUTIONS.length)];
+			p.phase3Attempts = PHASE3_ATTEMPTS[pick.nextInt(PHASE3_ATTEMPTS.length)];
+			p.maxLength2 = MAX_LENGTH2[pick.nextInt(MAX_LENGTH2.length)];
+			p.maxLength3 = MAX_LENGTH3[pick.nextInt(MAX_LENGTH3.length)];
+			p.probeMin333 = PROBE_MIN_333[pick.nextInt(PROBE_MIN_333.length)];
+			profiles.add(p);
+		}
+
+		ArrayList<Result> results = new ArrayList<Result>();
+		for (SolverProfile p: profiles) {
+			search.profile = p;
+			long tot_time = 0;
+			int tot_length = 0;
+			for (FullCube cube: corpus) {
+				long start = System.nanoTime();
+				search.byteSolve(new FullCube(cube));
+				tot_time += System.nanoTime() - start;
+				tot_length += search.totlen;
+			}
+			Result res = new Result(p, tot_time / 1e6 / n_states, tot_length * 1.0 / n_states);
+			System.out.println(res);
+			results.add(res);
+		}
+
+		ArrayList<Result> frontier = new ArrayList<Result>();
+		for (Result a: results) {
+			boolean dominated = false;
+			for (Result b: results) {
+				if (b.dominates(a)) {
+					dominated = true;
+					break;
+				}
+			}
+			if (!dominated) {
+				frontier.add(a);
+			}
+		}
+		frontier.sort((a, b) -> Double.compare(a.millis, b.millis));
+
+		System.out.println("\nPareto frontier:");
+		for (Result res: frontier) {
+			System.out.println(res);
+		}
+
+		Result fastest = frontier.get(0);
+		Result shortest = frontier.get(frontier.size() - 1);
+		Result balanced = fastest;
+		double best = Double.MAX_VALUE;
+		double dt = Math.max(shortest.millis - fastest.millis, 1e-9);
+		double dl = Math.max(fastest.length - shortest.length, 1e-9);
+		for (Result res: frontier) {
+			double dist = (res.millis - fastest.millis) / dt + (res.length - shortest.length) / dl;
+			if (dist < best) {
+				best = dist;
+				balanced = res;
+			}
+		}
+
+		System.out.println();
+		System.out.println("fastest\t" + fastest.profile);
+		System.out.println("balanced\t" + balanced.profile);
+		System.out.println("shortest\t" + shortest.profile);
+	}
+}
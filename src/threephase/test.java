@@ -5,8 +5,7 @@ import java.util.*;
 
 public class test {
 
-	public static void main(String[] args) {
-
+	static void initTables() {
 		try {
 			DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream("twophase.data")));
 			cs.min2phase.Tools.initFrom(dis);
@@ -36,16 +35,44 @@ public class test {
 				e2.printStackTrace();
 			}
 		}
+	}
 
+	public static void main(String[] args) {
+
+		initTables();
+
+		long start;
 		int n_solve;
 		if (args.length == 0) {
 			n_solve = 0;
 		} else {
 			n_solve = Integer.parseInt(args[0]);
 		}
+		if (args.length > 1) {
+			int n_threads = Integer.parseInt(args[1]);
+			SolverPool pool = new SolverPool(n_threads);
+			Random r = new Random(42L);
+			FullCube[] cubes = new FullCube[n_solve];
+			for (int i=0; i<n_solve; i++) {
+				cubes[i] = new FullCube(r);
+			}
+			try {
+				start = System.nanoTime();
+				String[] sols = pool.solveAll(cubes);
+				long elapsed = System.nanoTime() - start;
+				int tot = 0;
+				for (String sol: sols) {
+					tot += sol.length() / 4;
+				}
+				System.out.println(String.format("%d threads\t%5.2f\t%f\t%f", n_threads, tot / 1.0 / n_solve, elapsed / 1000000.0, n_solve / (elapsed / 1e9)));
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+
 		int tot_length = 0;
 		long tot_time = 0L;
-		long start;
 		Search first = new Search();
 		int[] dis = new int[60];
 		Random r = new Random(42L);